@@ -0,0 +1,206 @@
+package com.ulincsys.fluid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Loads many small classes from several threads at once through one generation
+ * loader, half of them from a jar through {@link FluidClassLoader#loadClass(File, String)}
+ * and half from bytes registered with {@link FluidClassLoader#define(Map)}.
+ *
+ * <p> Every class but the first extends another class of its set, so that
+ * defining one class loads its superclass while the loading lock of the first
+ * is held. Each round uses a fresh {@link ClassInteractor}, with 1, 2, 4, ...
+ * threads up to twice the available processors or the provided count, every
+ * thread loading every name in its own shuffled order. </p>
+ *
+ * <p> Run against the compiled classes, for instance: </p>
+ * <pre>
+ * javac -cp bin -d bench/out bench/com/ulincsys/fluid/*.java
+ * java -cp bin:bench/out com.ulincsys.fluid.ParallelLoadingStress [classes] [threads]
+ * </pre>
+ *
+ * <p> Exits with status 1 if two threads were handed different classes for
+ * the same name, concurrent registration of the jar returned different loaders,
+ * a load failed, or a round did not finish within a minute. </p>
+ *
+ * @author ulincsys
+ * @see FluidClassLoader#register(File)
+ */
+public class ParallelLoadingStress {
+	private static final String jarPackage = "com.ulincsys.fluid.stress.jar";
+	private static final String memoryPackage = "com.ulincsys.fluid.stress.memory";
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+
+		Path work = Files.createTempDirectory("fluid-stress");
+		try {
+			Path classes = compile(work, count);
+			File jar = work.resolve("stress.jar").toFile();
+			Map<String, byte[]> memory = pack(classes, jar);
+
+			List<String> names = new ArrayList<String>();
+			for(int i = 0; i < count; ++i) {
+				names.add(jarPackage + ".C" + i);
+				names.add(memoryPackage + ".C" + i);
+			}
+
+			Boolean passed = true;
+			for(int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+				passed &= round(threads, jar, memory, names);
+				if(threads == maxThreads) {
+					break;
+				}
+			}
+
+			if(!passed) {
+				System.exit(1);
+			}
+		} finally {
+			try(Stream<Path> files = Files.walk(work)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	private static Boolean round(int threads, File jar, Map<String, byte[]> memory, List<String> names) throws Exception {
+		FluidClassLoader loader = new ClassInteractor().getClassLoader();
+		loader.define(new HashMap<String, byte[]>(memory));
+
+		List<Callable<Map<String, Object>>> tasks = new ArrayList<Callable<Map<String, Object>>>();
+		for(int t = 0; t < threads; ++t) {
+			tasks.add(() -> {
+				List<String> order = new ArrayList<String>(names);
+				Collections.shuffle(order, ThreadLocalRandom.current());
+
+				Map<String, Object> loaded = new HashMap<String, Object>();
+				loaded.put("", loader.register(jar));
+				for(String name : order) {
+					loaded.put(name, name.startsWith(jarPackage) ? loader.loadClass(jar, name) : loader.loadClass(name));
+				}
+				return loaded;
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		List<Future<Map<String, Object>>> results;
+		try {
+			results = pool.invokeAll(tasks, 1, TimeUnit.MINUTES);
+		} finally {
+			pool.shutdownNow();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Map<String, Object> expected = null;
+		int mismatches = 0;
+		for(Future<Map<String, Object>> result : results) {
+			if(result.isCancelled()) {
+				System.out.printf("%d threads: did not finish within a minute, possible deadlock%n", threads);
+				return false;
+			}
+
+			Map<String, Object> loaded;
+			try {
+				loaded = result.get();
+			} catch(Exception e) {
+				System.out.printf("%d threads: load failed with %s%n", threads, e.getCause());
+				return false;
+			}
+
+			if(expected == null) {
+				expected = loaded;
+				continue;
+			}
+			for(Map.Entry<String, Object> entry : loaded.entrySet()) {
+				if(expected.get(entry.getKey()) != entry.getValue()) {
+					++mismatches;
+				}
+			}
+		}
+
+		System.out.printf("%d threads: %d classes in %.1f ms, %.0f classes/s, %d mismatches%n", threads, names.size(),
+				elapsed / 1e6, names.size() / (elapsed / 1e9), mismatches);
+		return mismatches == 0;
+	}
+
+	/**
+	 * Writes and compiles both sets of classes, where C{i} extends C{(i - 1) / 2}.
+	 *
+	 * @return The directory holding the compiled classes
+	 */
+	private static Path compile(Path work, int count) throws IOException {
+		Path sources = work.resolve("src");
+		Path classes = work.resolve("classes");
+		Files.createDirectories(classes);
+
+		List<String> files = new ArrayList<String>();
+		for(String pkg : new String[] { jarPackage, memoryPackage }) {
+			Path dir = sources.resolve(pkg.replace('.', File.separatorChar));
+			Files.createDirectories(dir);
+			for(int i = 0; i < count; ++i) {
+				String parent = i == 0 ? "" : " extends C" + ((i - 1) / 2);
+				Path file = dir.resolve("C" + i + ".java");
+				Files.writeString(file, String.format("package %s;%npublic class C%d%s {%n\tpublic int value() { return %d; }%n}%n",
+						pkg, i, parent, i));
+				files.add(file.toString());
+			}
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		List<String> options = new ArrayList<String>(List.of("-d", classes.toString()));
+		options.addAll(files);
+		if(compiler.run(null, null, null, options.toArray(new String[0])) != 0) {
+			throw new IllegalStateException("Could not compile the stress classes");
+		}
+		return classes;
+	}
+
+	/**
+	 * Packages the jar set into the provided jar, and reads the memory set.
+	 *
+	 * @return The bytes of the memory set, by binary name
+	 */
+	private static Map<String, byte[]> pack(Path classes, File jar) throws IOException {
+		Map<String, byte[]> memory = new HashMap<String, byte[]>();
+		try(OutputStream out = Files.newOutputStream(jar.toPath());
+				JarOutputStream jarOut = new JarOutputStream(out);
+				Stream<Path> files = Files.walk(classes)) {
+			for(Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				String entry = classes.relativize(file).toString().replace(File.separatorChar, '/');
+				String name = entry.substring(0, entry.length() - ".class".length()).replace('/', '.');
+				if(name.startsWith(jarPackage)) {
+					jarOut.putNextEntry(new JarEntry(entry));
+					jarOut.write(Files.readAllBytes(file));
+					jarOut.closeEntry();
+				} else {
+					memory.put(name, Files.readAllBytes(file));
+				}
+			}
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,72 @@
+package com.ulincsys.fluid;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated per call by the result holder form of
+ * {@link ClassInteractor#callDeclaredMethod(Class, Object, String, Class[], Object[], InteractionContext)},
+ * including an onAnyContext / onMessage / onException chain on the result, against
+ * the form returning a new context per call.
+ *
+ * <p> Run against the compiled classes, for instance: </p>
+ * <pre>
+ * javac -cp bin -d bench/out bench/com/ulincsys/fluid/*.java
+ * java -cp bin:bench/out com.ulincsys.fluid.ResultHolderAllocation
+ * </pre>
+ *
+ * <p> Exits with status 1 if the holder form allocates in steady state. </p>
+ *
+ * @author ulincsys
+ * @see InteractionContext#reset()
+ */
+public class ResultHolderAllocation {
+	private static final int calls = 1000000;
+	private static final Object[] noArgs = new Object[0];
+	private static final Class<?>[] noParams = new Class<?>[0];
+
+	private static long failures;
+
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		ClassInteractor C = new ClassInteractor();
+		StringBuilder sb = new StringBuilder("fluid");
+		InteractionContext holder = InteractionContext.stackless(null, false);
+
+		long holderBytes = 0;
+		long contextBytes = 0;
+		for(int round = 0; round < 5; ++round) {
+			long start = threads.getThreadAllocatedBytes(thread);
+			for(int i = 0; i < calls; ++i) {
+				C.callDeclaredMethod(StringBuilder.class, sb, "length", noParams, noArgs, holder)
+				.onAnyContext(ResultHolderAllocation::fail, Context.FAILURE, Context.EXCEPTION)
+				.onException(ResultHolderAllocation::fail);
+			}
+			long middle = threads.getThreadAllocatedBytes(thread);
+			for(int i = 0; i < calls; ++i) {
+				C.callDeclaredMethod(StringBuilder.class, sb, null, "length", noParams, noArgs)
+				.onAnyContext(ResultHolderAllocation::fail, Context.FAILURE, Context.EXCEPTION)
+				.onException(ResultHolderAllocation::fail);
+			}
+			long end = threads.getThreadAllocatedBytes(thread);
+
+			holderBytes = (middle - start) / calls;
+			contextBytes = (end - middle) / calls;
+			System.out.printf("round %d: holder %d B/call, new context %d B/call%n", round, holderBytes, contextBytes);
+		}
+
+		if(failures > 0) {
+			System.out.printf("%d calls failed%n", failures);
+			System.exit(1);
+		}
+		if(holderBytes > 0) {
+			System.out.println("The holder form allocates in steady state");
+			System.exit(1);
+		}
+	}
+
+	private static void fail(Object context) {
+		++failures;
+	}
+}
@@ -0,0 +1,47 @@
+#!/bin/sh
+# Launches Flu1d with an AppCDS archive of the classes loaded by a training run.
+#
+# Usage: fluid.sh [--train | --no-cds] [args...]
+#   --train   Rerun the training session and regenerate the archive
+#   --no-cds  Launch without the archive
+#
+# The compiled classes are expected in bin/ (as built by the IDE). They are packaged
+# into bin/fluid.jar, since class data sharing only archives classes loaded from jars.
+# The archive is regenerated whenever the jar is rebuilt.
+
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAR=${FLUID_JAR:-$DIR/bin/fluid.jar}
+LIST=${JAR%.jar}.classlist
+ARCHIVE=${JAR%.jar}.jsa
+
+if [ ! -f "$JAR" ] || [ -n "$(find "$DIR/bin/com" -newer "$JAR" -name '*.class' 2>/dev/null | head -n 1)" ]; then
+	if [ ! -d "$DIR/bin/com" ]; then
+		echo "No compiled classes found in $DIR/bin" >&2
+		exit 1
+	fi
+	rm -f "$JAR" "$ARCHIVE"
+	${JAVA_HOME:+$JAVA_HOME/bin/}jar cf "$JAR" -C "$DIR/bin" com || exit 1
+fi
+
+case "$1" in
+--no-cds)
+	shift
+	exec "$JAVA" -Xshare:off -cp "$JAR" com.ulincsys.fluid.Fluid "$@"
+	;;
+--train)
+	shift
+	rm -f "$ARCHIVE"
+	;;
+esac
+
+if [ ! -f "$ARCHIVE" ]; then
+	"$JAVA" -Xshare:off -XX:DumpLoadedClassList="$LIST" -cp "$JAR" com.ulincsys.fluid.Fluid --train &&
+	"$JAVA" -Xshare:dump -XX:SharedClassListFile="$LIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" >/dev/null ||
+	echo "Could not create the class data sharing archive, launching without it" >&2
+fi
+
+if [ -f "$ARCHIVE" ]; then
+	exec "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" com.ulincsys.fluid.Fluid "$@"
+fi
+exec "$JAVA" -cp "$JAR" com.ulincsys.fluid.Fluid "$@"
@@ -0,0 +1,58 @@
+package com.ulincsys.fluid;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of adapting many strings to one type, holding the adapted value
+ * of each element and the failure of each element which could not be adapted.
+ * A failed element leaves a null value, and never aborts the rest of the batch.
+ *
+ * @author ulincsys
+ * @see ClassAdapter#adaptAll(String[], Class, java.util.function.Function)
+ */
+public class AdaptationResult {
+	private final Class<?> type;
+	private final Object[] values;
+	private final Map<Integer, Exception> failures;
+
+	AdaptationResult(Class<?> type, Object[] values, Map<Integer, Exception> failures) {
+		this.type = type;
+		this.values = values;
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return The adapted values, in the order of the input, where failed elements are null
+	 */
+	public Object[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @return A read-only map from the index of each failed element to the exception
+	 * it failed with, in ascending index order
+	 */
+	public Map<Integer, Exception> getFailures() {
+		return failures;
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	public int getFailureCount() {
+		return failures.size();
+	}
+
+	/**
+	 * @return True if every element was adapted
+	 */
+	public Boolean isComplete() {
+		return failures.isEmpty();
+	}
+}
@@ -1,13 +1,41 @@
 package com.ulincsys.fluid;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Function;
-
+import java.util.stream.Stream;
+
+/**
+ * Adapts strings to other types through a constructor or static parse method
+ * of the target type which accepts a String.
+ * 
+ * <p> The strategy approved for a type is cached with this adapter, including
+ * the decisions of the onContext callback which led to it, and is linked so
+ * that later adaptations to that type are a direct call. A strategy is only
+ * reused with the same callback instance it was approved by, another callback
+ * resolves the type again and replaces it. Strategies of a class are dropped
+ * when its alias is redefined or undefined. </p>
+ * 
+ * <p> Many strings may be adapted at once with a non-interactive policy, see
+ * {@link #adaptAll(String[], Class, Function, ForkJoinPool)}. </p>
+ * 
+ * @author ulincsys
+ * @see ClassInteractor#getAdapter()
+ */
 public class ClassAdapter {
 	ClassInteractor C;
 	
+	private final Map<Class<?>, Strategy> strategies = new ConcurrentHashMap<Class<?>, Strategy>();
+	
 	public ClassAdapter(ClassInteractor C) {
 		this.C = C;
 	}
@@ -16,95 +44,221 @@ public class ClassAdapter {
 		Class<?> c = C.getClass(type);
 		
 		if(c == null) {
-			FluidClassLoader loader = new FluidClassLoader(C);
-			c = loader.loadUnknownClass(type);
+			c = C.getClassLoader().loadUnknownClass(type);
 		}
 		
 		return adapt(object, c, onContext);
 	}
 	
+	/**
+	 * Adapts the provided string to the provided type, through the first constructor or
+	 * parse method which accepts a String and is approved by onContext. The approved
+	 * strategy is cached for the type, and later adaptations to that type with the
+	 * same onContext call it directly without consulting onContext again.
+	 * 
+	 * @throws InteractionContext when no strategy was approved, or adaptation failed
+	 * @see ClassAdapter#invalidate(Class)
+	 */
 	public Object adapt(String object, Class<?> type, Function<InteractionContext, Boolean> onContext) {
-		InteractionContext R = new InteractionContext();
+		return adapt(object, type, strategy(object, type, onContext));
+	}
+	
+	// ----------------------------------------------------------------------------- BULK
+	
+	// The strategy is resolved and bound once on the calling thread, so the policy is never
+	// consulted from the pool and partitions do not count calls on the shared site. Inputs
+	// larger than one partition are split across the fork join pool.
+	
+	/**
+	 * Approves every strategy, including deprecated ones.
+	 */
+	public static final Function<InteractionContext, Boolean> acceptAll = context -> true;
+	
+	/**
+	 * Approves every strategy which is not deprecated.
+	 */
+	public static final Function<InteractionContext, Boolean> rejectDeprecated = context -> {
+		return !((AnnotatedElement) context.getTarget()).isAnnotationPresent(Deprecated.class);
+	};
+	
+	/**
+	 * Adapts every provided string to the provided type on the common pool, see
+	 * {@link #adaptAll(String[], Class, Function, ForkJoinPool)}.
+	 */
+	public AdaptationResult adaptAll(String[] objects, Class<?> type, Function<InteractionContext, Boolean> policy) {
+		return adaptAll(objects, type, policy, ForkJoinPool.commonPool());
+	}
+	
+	public AdaptationResult adaptAll(List<String> objects, Class<?> type, Function<InteractionContext, Boolean> policy) {
+		return adaptAll(objects.toArray(new String[0]), type, policy, ForkJoinPool.commonPool());
+	}
+	
+	public AdaptationResult adaptAll(Stream<String> objects, Class<?> type, Function<InteractionContext, Boolean> policy) {
+		return adaptAll(objects.toArray(String[]::new), type, policy, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Adapts every provided string to the provided type. The strategy is resolved as by
+	 * {@link #adapt(String, Class, Function)}, where the policy must not interact with the
+	 * user. A strategy cached for the type is only used if the same policy approved it.
+	 * Elements which fail are reported in the result and do not stop the others.
+	 * 
+	 * @param pool The pool to split inputs larger than {@value #partitionSize} elements across
+	 * @throws InteractionContext when the policy approves no strategy
+	 */
+	public AdaptationResult adaptAll(String[] objects, Class<?> type, Function<InteractionContext, Boolean> policy, ForkJoinPool pool) {
+		InvocationSite strategy = strategy(objects.length == 0 ? "" : objects[0], type, policy);
+		Object[] values = new Object[objects.length];
+		Map<Integer, Exception> failures = new ConcurrentHashMap<Integer, Exception>();
+		
+		Partition all = new Partition(strategy, objects, values, failures, 0, objects.length);
+		if(objects.length <= partitionSize) {
+			all.compute();
+		} else {
+			pool.invoke(all);
+		}
+		return new AdaptationResult(type, values, new TreeMap<Integer, Exception>(failures));
+	}
+	
+	private static final int partitionSize = 8192;
+	
+	private static final class Partition extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		final InvocationSite strategy;
+		final String[] objects;
+		final Object[] values;
+		final Map<Integer, Exception> failures;
+		final int from, to;
+		
+		Partition(InvocationSite strategy, String[] objects, Object[] values, Map<Integer, Exception> failures, int from, int to) {
+			this.strategy = strategy;
+			this.objects = objects;
+			this.values = values;
+			this.failures = failures;
+			this.from = from;
+			this.to = to;
+		}
 		
-		for(Constructor<?> c : type.getDeclaredConstructors()) {
+		@Override
+		protected void compute() {
+			if(to - from > partitionSize) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Partition(strategy, objects, values, failures, from, middle),
+						new Partition(strategy, objects, values, failures, middle, to));
+				return;
+			}
+			
+			for(int i = from; i < to; ++i) {
+				try {
+					values[i] = strategy.invoke(null, new Object[] { objects[i] });
+				} catch(InvocationTargetException e) {
+					failures.put(i, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+				} catch(Exception e) {
+					failures.put(i, e);
+				}
+			}
+		}
+	}
+	
+	// ----------------------------------------------------------------------------- STRATEGIES
+	
+	private InvocationSite strategy(String object, Class<?> type, Function<InteractionContext, Boolean> onContext) {
+		Strategy strategy = strategies.get(type);
+		if(strategy == null || strategy.policy != onContext) {
+			InvocationSite site = resolve(object, type, onContext);
+			site.bind();
+			strategy = new Strategy(site, onContext);
+			strategies.put(type, strategy);
+		}
+		return strategy.site;
+	}
+	
+	/**
+	 * A resolved strategy, with the callback which approved it.
+	 */
+	private static final class Strategy {
+		final InvocationSite site;
+		final Function<InteractionContext, Boolean> policy;
+		
+		Strategy(InvocationSite site, Function<InteractionContext, Boolean> policy) {
+			this.site = site;
+			this.policy = policy;
+		}
+	}
+	
+	/**
+	 * Drops the cached strategy of the provided type, so that the next adaptation
+	 * to it consults onContext again.
+	 * 
+	 * @return True if a strategy was cached for the type
+	 */
+	public Boolean invalidate(Class<?> type) {
+		return strategies.remove(type) != null;
+	}
+	
+	public void clear() {
+		strategies.clear();
+	}
+	
+	/**
+	 * @return The cached strategy of the provided type, or null if there is none
+	 */
+	public InvocationSite getStrategy(Class<?> type) {
+		Strategy strategy = strategies.get(type);
+		return strategy == null ? null : strategy.site;
+	}
+	
+	private Object adapt(String object, Class<?> type, InvocationSite strategy) {
+		try {
+			return strategy.invoke(null, new Object[] { object });
+		} catch(Exception e) {
+			if(strategy.getMethod() == null) {
+				throw new InteractionContext().context("Error instantiating class %s", type.getName()).context(e).context(type);
+			}
+			throw new InteractionContext().context(e instanceof InvocationTargetException
+					? "An exception occurred during execution of method %s" : "Error calling method %s",
+					strategy.getMethod().getName()).context(e);
+		}
+	}
+	
+	private InvocationSite resolve(String object, Class<?> type, Function<InteractionContext, Boolean> onContext) {
+		ClassMetadata metadata = ClassMetadata.of(type);
+		
+		for(Constructor<?> c : metadata.getConstructors()) {
 			var params = c.getParameters();
 			if(params.length == 1) {
 				if(params[0].getType().isAssignableFrom(String.class)) {
 					Annotation a = c.getDeclaredAnnotation(Deprecated.class);
-					if(a != null && !onContext.apply(new InteractionContext().target(c).context(a.toString()).context(type)
+					if(a != null && !onContext.apply(InteractionContext.stackless().target(c).context(a.toString()).context(type)
 							.context("Constructor<? assignable from String> for %s is marked for deprecation", c))) {
 						break;
-					} else if(!onContext.apply(new InteractionContext().target(c).context(type)
+					} else if(!onContext.apply(InteractionContext.stackless().target(c).context(type)
 							.context("found Constructor<? assignable from String> for %s", c))) {
 						break;
 					}
-					return C.instantiateClass(type, null, new Class<?>[] { params[0].getType() }, new Object[] { object })
-					.onAnyContext(context -> {
-						throw context;
-					}, Context.FAILURE, Context.EXCEPTION).getTarget();
+					return metadata.getSite(c);
 				}
 			}
 		}
 
-		for(Method m : type.getDeclaredMethods()) {
+		for(Method m : metadata.getMethods()) {
 			var params = m.getParameters();
 			if(params.length == 1 && m.getName().startsWith("parse")) {
 				if(params[0].getType().isAssignableFrom(String.class)) {
 					Annotation a = m.getDeclaredAnnotation(Deprecated.class);
-					if(a != null && !onContext.apply(new InteractionContext().target(m).context(a.toString()).context(type)
+					if(a != null && !onContext.apply(InteractionContext.stackless().target(m).context(a.toString()).context(type)
 							.context("parseMethod(? assignable from String) for %s is marked for deprecation", m))) {
 						break;
-					} else if(!onContext.apply(new InteractionContext().target(m).context(type)
+					} else if(!onContext.apply(InteractionContext.stackless().target(m).context(type)
 							.context("found parseMethod(? assignable from String) for %s", m))) {
 						break;
 					}
-					return C.callDeclaredMethod(m, null, new Object[] { object }, context -> {
-						return false;
-					}).onAnyContext(context -> {
-						throw context;
-					}, Context.FAILURE, Context.EXCEPTION).getTarget();
+					return metadata.getSite(m);
 				}
 			}
 		}
 		
-		throw R.context("Error: %s not adaptable from %s", type.getName(), object);
+		throw new InteractionContext().context("Error: %s not adaptable from %s", type.getName(), object);
 	}
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
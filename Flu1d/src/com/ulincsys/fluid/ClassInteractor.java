@@ -5,15 +5,34 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Constructor;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
 public class ClassInteractor {
@@ -22,10 +41,17 @@ public class ClassInteractor {
 	public ArrayList<String> classPath;
 	public ArrayList<Object> results;
 	
-	private JavaCompiler compiler;
-	private ClassAdapter adapter;
+	private volatile CompilerService compilerService;
+	private volatile ClassAdapter adapter;
+	private FluidClassLoader loader;
+	private InvocationCache invocations;
+	private ClassPrefetcher prefetcher;
 	private String[] defaultClassPath = { "java.lang", "java.util", "java.math" };
+	private static final Function<InteractionContext, Boolean> rejectResult = context -> false;
+	private static final Pattern packageDeclaration = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
 	private File compilationDir;
+	private CompileCache compileCache;
+	private volatile List<String> compilerOptions = List.of();
 	
 	public ClassInteractor(Class<?>... defaultClassPath) throws InteractionContext {
 		this("compiledClasses", defaultClassPath);
@@ -33,21 +59,15 @@ public class ClassInteractor {
 	
 	public ClassInteractor(String cmpDir, Class<?>... defaultClassPath) throws InteractionContext {
 		heap = new HashMap<String, Object>();
-		classes = new HashMap<String, Class<?>>();
+		classes = new ConcurrentHashMap<String, Class<?>>();
 		results = new ArrayList<Object>();
 		classPath = new ArrayList<String>();
 		
-		adapter = new ClassAdapter(this);
-		compiler = ToolProvider.getSystemJavaCompiler();
+		loader = FluidClassLoader.generation(this);
+		invocations = new InvocationCache();
+		prefetcher = new ClassPrefetcher();
 		compilationDir = new File(cmpDir);
-		
-		if(!compilationDir.exists() && !compilationDir.mkdir() || !compilationDir.canWrite()) {
-			if(hasCompiler()) {
-				throw new InteractionContext()
-				.context("Could not create or access provided compilation output directory")
-				.target(compilationDir);
-			}
-		}
+		compileCache = new CompileCache(new File(compilationDir, ".fluid-cache"));
 		
 		for(Class<?> c : defaultClassPath) {
 			String Package = c.getPackageName();
@@ -66,20 +86,19 @@ public class ClassInteractor {
 	// ----------------------------------------------------------------------------- RETURNS
 	
 	private InteractionContext success() {
-		return new InteractionContext(null, true);
+		return InteractionContext.stackless(null, true);
 	}
 	
-	@SuppressWarnings("unused")
 	private InteractionContext success(String format, Object... args) {
-		return new InteractionContext(String.format(format, args), true);
+		return InteractionContext.stackless(null, true).context(format, args);
 	}
 	
 	private InteractionContext failure() {
-		return new InteractionContext(null, false);
+		return InteractionContext.stackless(null, false);
 	}
 	
 	private InteractionContext failure(String format, Object... args) {
-		return new InteractionContext(String.format(format, args), false);
+		return InteractionContext.stackless(null, false).context(format, args);
 	}
 	
 	// ----------------------------------------------------------------------------- MANAGING
@@ -99,7 +118,16 @@ public class ClassInteractor {
 			R.context("Alias invalid, the fully qualified name will be used.", alias);
 		}
 		
-		return R.context(c).target(classes.put(alias, c));
+		Class<?> prev = classes.put(alias, c);
+		if(prev != null && prev != c) {
+			invocations.invalidate(prev);
+			if(adapter != null) {
+				adapter.invalidate(prev);
+			}
+		}
+		prefetcher.prefetch(c);
+		
+		return R.context(c).target(prev);
 	}
 	
 	public Class<?> getClass(String forName) {
@@ -107,7 +135,14 @@ public class ClassInteractor {
 	}
 	
 	public Class<?> undefineClass(String forName) {
-		return classes.remove(forName);
+		Class<?> c = classes.remove(forName);
+		if(c != null) {
+			invocations.invalidate(c);
+			if(adapter != null) {
+				adapter.invalidate(c);
+			}
+		}
+		return c;
 	}
 
 	public Object getVar(String forName) {
@@ -118,6 +153,69 @@ public class ClassInteractor {
 		return heap.remove(forName);
 	}
 	
+	// ----------------------------------------------------------------------------- GENERATIONS
+	
+	/**
+	 * Creates a new interactor with a fresh class loader generation. This interactor
+	 * must not be used afterwards, so that the classes of its generation can be unloaded.
+	 * 
+	 * <p> When carrying over, heap variables and class aliases whose classes were not
+	 * loaded by this generation are kept. The check only looks at the class of each
+	 * variable, so a kept variable referencing objects of this generation keeps the
+	 * generation reachable. </p>
+	 * 
+	 * <p> The compiler service, if it was started, is handed over to the new interactor
+	 * together with its warm file manager. Jobs already queued still complete against
+	 * this interactor. </p>
+	 * 
+	 * @param carryOver True to keep variables and aliases whose classes did not change
+	 */
+	public ClassInteractor reload(Boolean carryOver) {
+		ClassInteractor next = new ClassInteractor(compilationDir.getPath());
+		next.classPath.clear();
+		next.classPath.addAll(classPath);
+		next.invocations.setLinking(invocations.isLinking());
+		next.invocations.setThresholds(invocations.getHandleThreshold(), invocations.getLinkThreshold());
+		next.prefetcher.setEnabled(prefetcher.isEnabled());
+		next.prefetcher.setDepth(prefetcher.getDepth());
+		next.prefetcher.setInitialize(prefetcher.isInitializing());
+		next.compilerOptions = compilerOptions;
+		prefetcher.shutdown();
+		
+		synchronized(this) {
+			next.compilerService = compilerService;
+			compilerService = null;
+		}
+		
+		if(carryOver) {
+			heap.forEach((var, o) -> {
+				if(o != null && !isGenerationClass(o.getClass())) {
+					next.heap.put(var, o);
+				}
+			});
+			classes.forEach((alias, c) -> {
+				if(!isGenerationClass(c)) {
+					next.classes.put(alias, c);
+				}
+			});
+		}
+		
+		return next;
+	}
+	
+	/**
+	 * @return True if the provided class was loaded by the class loader generation
+	 * of this interactor, else false
+	 */
+	public Boolean isGenerationClass(Class<?> c) {
+		for(ClassLoader l = c.getClassLoader(); l != null; l = l.getParent()) {
+			if(l == loader) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	// ----------------------------------------------------------------------------- INVOCATION
 	
 	public Object tryCall(Object o, String fn, Object... parameters) throws InteractionContext {
@@ -125,7 +223,7 @@ public class ClassInteractor {
 		
 		return callDeclaredMethod(o.getClass(), o, null, fn, classes, parameters)
 				.onException((context, ex) -> {
-					throw context;
+					throw context.withStackTrace();
 				}).getTarget();
 	}
 	
@@ -160,24 +258,54 @@ public class ClassInteractor {
 	public InteractionContext callDeclaredMethod(Class<?> c, Object o,
 			String var, String name, Class<?>[] params, Object[] args) {
 		
-		Method m;
+		InvocationSite site;
 		try {
-			m = c.getDeclaredMethod(name, params);
+			site = invocations.lookup(c, name, params);
 		} catch (NoSuchMethodException | SecurityException e) {
 			return failure("Error calling method %s on %s", name,
 					name != null ? name : c.getName()).context(e);
 		}
 		
-		return callDeclaredMethod(m, o, args, context -> {
+		return callDeclaredMethod(site, o, args, context -> {
 			return false;
 		});
 	}
 	
 	public InteractionContext callDeclaredMethod(Method m, Object o, Object[] args, Function<InteractionContext, Boolean> onContext) {
-		InteractionContext R = failure();
+		return callDeclaredMethod(new InvocationSite(m, null), o, args, onContext);
+	}
+	
+	public InteractionContext callDeclaredMethod(InvocationSite site, Object o, Object[] args, Function<InteractionContext, Boolean> onContext) {
+		return invoke(site, o, args, onContext, failure());
+	}
+	
+	// Allocation free forms, which write the outcome into a caller supplied (and reused)
+	// result holder instead of a new context. Results are never added to the results list.
+	
+	public InteractionContext callDeclaredMethod(Class<?> c, Object o, String name,
+			Class<?>[] params, Object[] args, InteractionContext result) {
+		
+		InvocationSite site;
+		try {
+			site = invocations.lookup(c, name, params);
+		} catch (NoSuchMethodException | SecurityException e) {
+			return result.reset().context(false)
+					.context("Error calling method %s on %s", name, c.getName()).context(e);
+		}
+		
+		return callDeclaredMethod(site, o, args, result);
+	}
+	
+	public InteractionContext callDeclaredMethod(InvocationSite site, Object o, Object[] args, InteractionContext result) {
+		return invoke(site, o, args, rejectResult, result.reset().context(false));
+	}
+	
+	private InteractionContext invoke(InvocationSite site, Object o, Object[] args,
+			Function<InteractionContext, Boolean> onContext, InteractionContext R) {
+		Method m = site.getMethod();
 		
 		try {
-			Object result = m.invoke(o, args);
+			Object result = site.invoke(o, args);
 			if(m.getReturnType() == void.class) {
 				R.context("Method execution concluded");
 			} else if(result == null) {
@@ -207,17 +335,29 @@ public class ClassInteractor {
 		Class<?> c = getClass(forName);
 		
 		if(c == null) {
-			return failure("Error instantiating class %s, no class found with that name", forName);
+			try {
+				c = loader.loadUnknownClass(forName);
+			} catch(ClassNotFoundException e) {
+				return failure("Error instantiating class %s, no class found with that name", forName);
+			}
 		}
 
 		return instantiateClass(c, var, params, args);
 	}
 	
+	/**
+	 * Instantiates the provided class through the shared factory of the constructor
+	 * accepting the provided parameter types, see {@link ClassMetadata#getFactory(Class...)}.
+	 */
 	public InteractionContext instantiateClass(Class<?> c, String var, Class<?>[] params, Object[] args) {
 		try {
 			var R = success().context(c);
-			Constructor<?> constructor = c.getDeclaredConstructor(params);
-			Object o = constructor.newInstance(args);
+			InvocationSite factory = ClassMetadata.of(c).getFactory(params);
+			if(factory == null) {
+				return noConstructor(c, params);
+			}
+			
+			Object o = factory.invoke(null, args);
 			if(var != null) {
 				Object prev = heap.put(var, o);
 				if(prev != null) {
@@ -231,15 +371,366 @@ public class ClassInteractor {
 		}
 	}
 	
+	public InteractionContext instantiateClasses(String forName, String var, int count, Boolean asList,
+			Boolean parallel, Class<?>[] params, Object[] args) {
+		Class<?> c = getClass(forName);
+		
+		if(c == null) {
+			try {
+				c = loader.loadUnknownClass(forName);
+			} catch(ClassNotFoundException e) {
+				return failure("Error instantiating class %s, no class found with that name", forName);
+			}
+		}
+		
+		return instantiateClasses(c, var, count, asList, parallel, params, args);
+	}
+	
+	/**
+	 * Creates count instances of the provided class with the same arguments, and stores
+	 * them as an array of that class or as a list. The constructor is linked before the
+	 * first instance is created. In parallel, instances are created on the common
+	 * fork join pool, and creation stops at the first failure.
+	 * 
+	 * @param asList True to store an {@link ArrayList}, false to store an array
+	 * @param parallel True to spread creation across the common pool
+	 */
+	public InteractionContext instantiateClasses(Class<?> c, String var, int count, Boolean asList,
+			Boolean parallel, Class<?>[] params, Object[] args) {
+		if(count < 0) {
+			return failure("Error instantiating class %s, count must not be negative", c.getName());
+		}
+		
+		InvocationSite factory;
+		try {
+			factory = ClassMetadata.of(c).getFactory(params);
+			if(factory == null) {
+				return noConstructor(c, params);
+			}
+			factory.link();
+		} catch(RuntimeException e) {
+			return failure("Error instantiating class %s", c.getName()).context(e).context(c);
+		}
+		
+		Object[] instances = (Object[]) Array.newInstance(c, count);
+		AtomicReference<Exception> failed = new AtomicReference<Exception>();
+		if(parallel) {
+			IntStream.range(0, count).parallel().forEach(i -> {
+				if(failed.get() == null) {
+					try {
+						instances[i] = factory.invoke(null, args);
+					} catch(Exception e) {
+						failed.compareAndSet(null, e);
+					}
+				}
+			});
+		} else {
+			try {
+				for(int i = 0; i < count; ++i) {
+					instances[i] = factory.invoke(null, args);
+				}
+			} catch(Exception e) {
+				failed.set(e);
+			}
+		}
+		
+		if(failed.get() != null) {
+			return failure("Error instantiating class %s", c.getName()).context(failed.get()).context(c);
+		}
+		
+		Object o = asList ? new ArrayList<Object>(Arrays.asList(instances)) : instances;
+		var R = success("Created %d instances of %s", count, c.getName()).context(c);
+		if(var != null) {
+			Object prev = heap.put(var, o);
+			if(prev != null) {
+				R.context("Redefining %s as %s", var, o.getClass().getSimpleName())
+				.previous(prev);
+			}
+		}
+		return R.target(o);
+	}
+	
+	private InteractionContext noConstructor(Class<?> c, Class<?>[] params) {
+		return failure("Error instantiating class %s, no constructor declared with parameters %s",
+				c.getName(), Arrays.toString(params)).context(c);
+	}
+	
 	// ----------------------------------------------------------------------------- COMPILATION
 	
+	// Compilation runs as jobs on the compiler service, the synchronous forms wait for their job.
+	
 	public InteractionContext compileClass(String inputFile) {
-		OutputStream out = new ByteArrayOutputStream();
+		return compileClassAsync(inputFile).join();
+	}
+	
+	public CompletableFuture<InteractionContext> compileClassAsync(String inputFile) {
+		if(!hasCompiler()) {
+			return CompletableFuture.completedFuture(compilerUnavailable());
+		}
+		InteractionContext unavailable = prepareCompilationDir();
+		if(unavailable != null) {
+			return CompletableFuture.completedFuture(unavailable);
+		}
+		return getCompilerService().submit(() -> compileFile(inputFile));
+	}
+	
+	public List<InteractionContext> compileClasses(String directoryOrGlob) {
+		return compileClassesAsync(directoryOrGlob).join();
+	}
+	
+	public List<InteractionContext> compileClasses(List<File> sources) {
+		return compileClassesAsync(sources).join();
+	}
+	
+	/**
+	 * Compiles every source file in the provided directory, or every file matching
+	 * the provided glob pattern (such as {@code scripts/**.java}).
+	 * 
+	 * @see #compileClassesAsync(List)
+	 */
+	public CompletableFuture<List<InteractionContext>> compileClassesAsync(String directoryOrGlob) {
+		if(!hasCompiler()) {
+			return CompletableFuture.completedFuture(List.of(compilerUnavailable()));
+		}
+		InteractionContext unavailable = prepareCompilationDir();
+		if(unavailable != null) {
+			return CompletableFuture.completedFuture(List.of(unavailable));
+		}
+		return getCompilerService().submit(() -> compileFiles(directoryOrGlob));
+	}
+	
+	/**
+	 * Compiles the provided source files and writes the resulting classes into the
+	 * compilation directory. Sources are grouped by directory, and each group is compiled
+	 * as a single compilation task on the compiler service, which can resolve the sources
+	 * of the other groups through the source path. Groups whose batch is unchanged are
+	 * served from the compile cache.
+	 * 
+	 * @return One context per source file, in the order provided, holding the diagnostics
+	 * reported for that source, with the exit code of its compilation as target
+	 */
+	public CompletableFuture<List<InteractionContext>> compileClassesAsync(List<File> sources) {
+		if(!hasCompiler()) {
+			return CompletableFuture.completedFuture(List.of(compilerUnavailable()));
+		}
+		InteractionContext unavailable = prepareCompilationDir();
+		if(unavailable != null) {
+			return CompletableFuture.completedFuture(List.of(unavailable));
+		}
+		return getCompilerService().submit(() -> compileFiles(sources));
+	}
+	
+	public InteractionContext compileSource(File sourceFile) {
+		return compileSourceAsync(sourceFile).join();
+	}
+	
+	public InteractionContext compileSource(String className, String source) {
+		return compileSourceAsync(className, source).join();
+	}
+	
+	public CompletableFuture<InteractionContext> compileSourceAsync(File sourceFile) {
+		if(!hasCompiler()) {
+			return CompletableFuture.completedFuture(compilerUnavailable());
+		}
+		return getCompilerService().submit(() -> {
+			String source;
+			try {
+				source = Files.readString(sourceFile.toPath());
+			} catch(IOException e) {
+				return failure("An exception occurred while reading source file %s", sourceFile).context(e);
+			}
+			
+			return compileSource(className(sourceFile, source), MemoryFileManager.source(sourceFile, source), source);
+		});
+	}
+	
+	public CompletableFuture<InteractionContext> compileSourceAsync(String className, String source) {
+		if(!hasCompiler()) {
+			return CompletableFuture.completedFuture(compilerUnavailable());
+		}
+		return getCompilerService().submit(() -> {
+			return compileSource(className, MemoryFileManager.source(className, source), source);
+		});
+	}
+	
+	/**
+	 * Creates the compilation directory the first time classes are written to it.
+	 * 
+	 * @return A failed context if the directory cannot be created or written, else null
+	 */
+	private InteractionContext prepareCompilationDir() {
+		if(!compilationDir.exists() && !compilationDir.mkdirs() || !compilationDir.canWrite()) {
+			return failure("Could not create or access provided compilation output directory")
+					.target(compilationDir);
+		}
+		return null;
+	}
+	
+	private InteractionContext compilerUnavailable() {
+		return failure("Compilation is not available on this platform")
+				.context("Platform returned null when querying for available compiler, is a JDK installed?");
+	}
+	
+	private InteractionContext compileFile(String inputFile) {
+		File sourceFile = new File(inputFile);
+		String source;
+		try {
+			source = Files.readString(sourceFile.toPath());
+		} catch(IOException e) {
+			return failure("An exception occurred while reading source file %s", sourceFile).context(e);
+		}
+		
+		InteractionContext R = success();
+		String className = className(sourceFile, source);
+		Map<String, byte[]> compiled = compile(className, MemoryFileManager.source(sourceFile, source), source, R);
+		if(compiled == null) {
+			return R.target(1);
+		}
+		
 		try {
-			return compileClass(null, out, out, "-d", compilationDir.getCanonicalPath(), inputFile);
+			writeClasses(compiled);
 		} catch (IOException e) {
-			return failure("An exception occurred while referencing the compilation directory")
-					.context(e);
+			return failure("An exception occurred while writing to the compilation directory")
+					.context(e).target(1);
+		}
+		return R.target(0);
+	}
+	
+	private List<InteractionContext> compileFiles(String directoryOrGlob) {
+		List<File> sources = new ArrayList<File>();
+		try {
+			Path base;
+			PathMatcher matcher;
+			int glob = directoryOrGlob.replace('\\', '/').split("[*?\\[{]")[0].lastIndexOf('/');
+			if(new File(directoryOrGlob).isDirectory()) {
+				base = Path.of(directoryOrGlob);
+				matcher = FileSystems.getDefault().getPathMatcher("glob:**.java");
+			} else {
+				base = Path.of(glob < 0 ? "." : directoryOrGlob.substring(0, glob + 1));
+				matcher = FileSystems.getDefault().getPathMatcher("glob:" + directoryOrGlob.substring(glob + 1));
+			}
+			
+			try(Stream<Path> paths = Files.walk(base)) {
+				paths.filter(path -> Files.isRegularFile(path) && matcher.matches(base.relativize(path)))
+				.forEach(path -> sources.add(path.toFile()));
+			}
+		} catch(Exception e) {
+			return List.of(failure("An exception occurred while listing sources matching %s", directoryOrGlob)
+					.context(e));
+		}
+		
+		if(sources.isEmpty()) {
+			return List.of(failure("No sources found matching %s", directoryOrGlob));
+		}
+		return compileFiles(sources);
+	}
+	
+	/**
+	 * Runs as a job of the compiler service. The groups are compiled one after the other
+	 * with its warm file manager, each looked up in the compile cache first. The key of a
+	 * group covers every source of the batch and the source path, since a group compiles
+	 * against the other sources.
+	 */
+	private List<InteractionContext> compileFiles(List<File> sources) {
+		Map<Path, InteractionContext> results = new LinkedHashMap<Path, InteractionContext>();
+		Map<Path, String> classNames = new HashMap<Path, String>();
+		Map<File, List<JavaFileObject>> groups = new LinkedHashMap<File, List<JavaFileObject>>();
+		Set<String> sourcePath = new LinkedHashSet<String>();
+		StringBuilder batch = new StringBuilder();
+		
+		for(File source : sources) {
+			File file = source.getAbsoluteFile();
+			results.put(file.toPath().normalize(), success().target(0));
+			
+			try {
+				File root = file.getParentFile();
+				String text = Files.readString(file.toPath());
+				classNames.put(file.toPath().normalize(), className(file, text));
+				groups.computeIfAbsent(file.getParentFile(), dir -> new ArrayList<JavaFileObject>())
+				.add(MemoryFileManager.source(file, text));
+				batch.append(file.getPath()).append('\0').append(text).append('\0');
+				
+				Matcher pkg = packageDeclaration.matcher(text);
+				if(pkg.find()) {
+					for(int i = pkg.group(1).split("\\.").length; i > 0 && root != null; --i) {
+						root = root.getParentFile();
+					}
+				}
+				if(root != null) {
+					sourcePath.add(root.getPath());
+				}
+			} catch(IOException e) {
+				results.get(file.toPath().normalize()).context(false).target(1)
+				.context("An exception occurred while reading source file %s", file).context(e);
+			}
+		}
+		
+		List<String> options = new ArrayList<String>(compilerOptions);
+		options.addAll(List.of("-implicit:none", "-sourcepath", String.join(File.pathSeparator, sourcePath)));
+		String batchKey = CompileCache.key("", batch, options);
+		
+		groups.forEach((directory, group) -> {
+			String key = CompileCache.key(directory.getPath(), batchKey, List.of());
+			Map<String, byte[]> compiled = compileCache.get(key);
+			if(compiled != null) {
+				try {
+					writeClasses(compiled);
+					for(JavaFileObject unit : group) {
+						results.get(Path.of(unit.toUri()).normalize()).context("Compilation skipped, source unchanged");
+					}
+				} catch(IOException e) {
+					for(JavaFileObject unit : group) {
+						results.get(Path.of(unit.toUri()).normalize()).context(false).target(1)
+						.context("An exception occurred while writing to the compilation directory").context(e);
+					}
+				}
+				return;
+			}
+			
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+			try {
+				Map<String, byte[]> output = new HashMap<String, byte[]>();
+				Boolean success = getCompilerService().compile(group, options, diagnostics, output);
+				writeClasses(output);
+				if(success) {
+					compileCache.put(key, output);
+				}
+				
+				diagnostics.getDiagnostics().forEach(diagnostic -> {
+					InteractionContext R = diagnostic.getSource() == null ? null :
+						results.get(Path.of(diagnostic.getSource().toUri()).normalize());
+					if(R != null) {
+						R.context(diagnostic.toString());
+						if(diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+							R.context(false).target(1);
+						}
+					}
+				});
+				
+				for(JavaFileObject unit : group) {
+					Path path = Path.of(unit.toUri()).normalize();
+					if(success || output.containsKey(classNames.get(path))) {
+						results.get(path).context("Compilation completed");
+					} else {
+						results.get(path).context(false).target(1).context("Compilation failed");
+					}
+				}
+			} catch(Exception e) {
+				for(JavaFileObject unit : group) {
+					results.get(Path.of(unit.toUri()).normalize()).context(false).target(1)
+					.context("An exception occurred during compilation").context(e);
+				}
+			}
+		});
+		
+		return new ArrayList<InteractionContext>(results.values());
+	}
+	
+	private void writeClasses(Map<String, byte[]> compiled) throws IOException {
+		for(Map.Entry<String, byte[]> c : compiled.entrySet()) {
+			File output = new File(compilationDir, c.getKey().replace('.', File.separatorChar) + ".class");
+			output.getParentFile().mkdirs();
+			Files.write(output.toPath(), c.getValue());
 		}
 	}
 	
@@ -250,7 +741,7 @@ public class ClassInteractor {
 		}
 		
 		try {
-			return new InteractionContext().target(compiler.run(in, out, err, args))
+			return InteractionContext.stackless().target(compiler().run(in, out, err, args))
 					.context("Compilation completed")
 					.context(out instanceof ByteArrayOutputStream ?
 							ByteArrayOutputStream.class.cast(out).toString() :
@@ -265,14 +756,164 @@ public class ClassInteractor {
 		}
 	}
 	
+	private InteractionContext compileSource(String className, JavaFileObject unit, String source) {
+		InteractionContext R = success();
+		Map<String, byte[]> compiled = compile(className, unit, source, R);
+		if(compiled == null) {
+			return R;
+		}
+		
+		try {
+			FluidClassLoader loader = new FluidClassLoader(this, this.loader);
+			loader.define(compiled);
+			Class<?> c = loader.loadClass(className);
+			
+			injectClass(c).onMessage(message -> {
+				R.context(message);
+			}).onTarget(target -> {
+				R.context("Redefining alias from %s", target);
+			});
+			return R.context(c).target(c);
+		} catch(Exception e) {
+			return failure("An exception occurred while loading compiled class %s", className)
+					.context(e);
+		}
+	}
+	
+	/**
+	 * Compiles the provided source into memory, or returns the cached class bytes
+	 * if the same source was compiled before. Diagnostics are added to the provided
+	 * context, which is marked as failed if compilation did not succeed.
+	 * 
+	 * @return The compiled class bytes by binary name, or null
+	 */
+	private Map<String, byte[]> compile(String className, JavaFileObject unit, String source, InteractionContext R) {
+		String key = CompileCache.key(className, source, compilerOptions);
+		Map<String, byte[]> compiled = compileCache.get(key);
+		if(compiled != null) {
+			R.context("Compilation skipped, source unchanged");
+			return compiled;
+		}
+		
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		try {
+			long start = System.nanoTime();
+			Map<String, byte[]> output = new HashMap<String, byte[]>();
+			Boolean success = getCompilerService().compile(List.of(unit), compilerOptions, diagnostics, output);
+			long elapsed = (System.nanoTime() - start) / 1000000;
+			
+			R.context(success).context(success ? "Compilation completed in %d ms" : "Compilation failed in %d ms", elapsed);
+			diagnostics.getDiagnostics().forEach(diagnostic -> {
+				R.context(diagnostic.toString());
+			});
+			
+			if(success) {
+				compiled = output;
+				compileCache.put(key, compiled);
+			}
+			return compiled;
+		} catch(Exception e) {
+			R.context(false).context("An exception occurred during compilation").context(e);
+			return null;
+		}
+	}
+	
+	private static String className(File sourceFile, String source) {
+		String className = sourceFile.getName().replaceFirst("\\.java$", "");
+		Matcher pkg = packageDeclaration.matcher(source);
+		if(pkg.find()) {
+			className = pkg.group(1) + "." + className;
+		}
+		return className;
+	}
+	
 	// ----------------------------------------------------------------------------- GETTING AND SETTING
 
 	public ClassAdapter getAdapter() {
+		if(adapter == null) {
+			synchronized(this) {
+				if(adapter == null) {
+					adapter = new ClassAdapter(this);
+				}
+			}
+		}
 		return adapter;
 	}
 	
+	public FluidClassLoader getClassLoader() {
+		return loader;
+	}
+	
+	public InvocationCache getInvocationCache() {
+		return invocations;
+	}
+	
+	public ClassPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+	
+	/**
+	 * @return The compiler service of this interactor, started on first use,
+	 * or null if compilation is not available
+	 */
+	public CompilerService getCompilerService() {
+		if(compilerService == null && hasCompiler()) {
+			synchronized(this) {
+				if(compilerService == null) {
+					compilerService = new CompilerService(compiler());
+				}
+			}
+		}
+		return compilerService;
+	}
+	
+	/**
+	 * @return The compiler service of this interactor, or null if it was not started yet.
+	 * Unlike {@link #getCompilerService()}, this never starts the service.
+	 */
+	public CompilerService peekCompilerService() {
+		return compilerService;
+	}
+	
+	public CompileCache getCompileCache() {
+		return compileCache;
+	}
+	
+	/**
+	 * @return A read-only view of the options passed to the compiler
+	 */
+	public List<String> getCompilerOptions() {
+		return compilerOptions;
+	}
+	
+	/**
+	 * Sets the options passed to the compiler by every later compilation, such as
+	 * {@code -cp} or {@code --release}. The options are part of the compile cache key,
+	 * and the entries of a {@code -cp} option are stamped like the class path.
+	 * 
+	 * @see CompileCache#key(String, CharSequence, List)
+	 */
+	public void setCompilerOptions(List<String> options) {
+		compilerOptions = List.copyOf(options);
+	}
+	
+	public File getCompilationDir() {
+		return compilationDir;
+	}
+	
 	public Boolean hasCompiler() {
-		return compiler != null;
+		return compiler() != null;
+	}
+	
+	/**
+	 * Looks up the system compiler on first use, which loads the compiler module.
+	 */
+	private static JavaCompiler compiler() {
+		return SystemCompiler.compiler;
+	}
+	
+	private static final class SystemCompiler {
+		static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
 	}
 	
 	// ----------------------------------------------------------------------------- Utilities
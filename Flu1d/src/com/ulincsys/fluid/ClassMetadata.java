@@ -0,0 +1,324 @@
+package com.ulincsys.fluid;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The declared methods, constructors and fields of a class, resolved once
+ * and shared by every {@link FluidObject} of that class.
+ *
+ * <p> Metadata is cached through a {@link ClassValue}, which stores it with
+ * the class itself, so cached metadata never keeps a class from being
+ * unloaded. The shared lists are read-only. </p>
+ *
+ * <p> Methods are indexed by name, and by name and exact parameter types.
+ * Lookups by parameter types which are not declared exactly fall back to
+ * the first declared overload callable with those types, and the outcome
+ * of that search is cached as well, unless one of the types belongs to a
+ * loader the class cannot see. </p>
+ *
+ * <p> Constructors are invoked through factories, which are call sites
+ * shared like those of methods, so each constructor is linked at most once
+ * however many instances are created through it. Factories are only found
+ * by the exact parameter types of their constructor. </p>
+ *
+ * <p> Fields are accessed through a {@link FieldAccessor} linked on first
+ * request. The accessors of the instance fields are also kept in declaration
+ * order, so that an object can be read in bulk without any lookup. </p>
+ *
+ * @author ulincsys
+ * @see FluidObject
+ */
+public final class ClassMetadata {
+	private static final ClassValue<ClassMetadata> cache = new ClassValue<ClassMetadata>() {
+		@Override
+		protected ClassMetadata computeValue(Class<?> c) {
+			return new ClassMetadata(c);
+		}
+	};
+
+	private final Class<?> c;
+	private final List<Method> methods;
+	private final List<Constructor<?>> constructors;
+	private final List<Field> fields;
+	private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+	private final Map<String, FieldAccessor> accessors = new ConcurrentHashMap<String, FieldAccessor>();
+	private volatile FieldAccessor[] instanceAccessors;
+	private final Map<String, List<Method>> overloads = new HashMap<String, List<Method>>();
+	private final Map<Signature, Executable> signatures = new ConcurrentHashMap<Signature, Executable>();
+	private final Map<Signature, Constructor<?>> declaredConstructors = new HashMap<Signature, Constructor<?>>();
+	private final Map<Executable, InvocationSite> sites = new ConcurrentHashMap<Executable, InvocationSite>();
+	private final Map<String, MethodInvoker> invokers = new ConcurrentHashMap<String, MethodInvoker>();
+	private static final InvocationCache policy = new InvocationCache();
+	private static final ThreadLocal<Signature> probes = ThreadLocal.withInitial(Signature::new);
+	private static final Class<?>[] noParams = new Class<?>[0];
+
+	/**
+	 * Cached outcome of a signature lookup which found nothing.
+	 */
+	private static final Executable none = ClassMetadata.class.getDeclaredConstructors()[0];
+
+	private ClassMetadata(Class<?> c) {
+		this.c = c;
+		methods = Collections.unmodifiableList(Arrays.asList(c.getDeclaredMethods()));
+		constructors = Collections.unmodifiableList(Arrays.asList(c.getDeclaredConstructors()));
+		fields = Collections.unmodifiableList(Arrays.asList(c.getDeclaredFields()));
+		for(Field f : fields) {
+			fieldsByName.put(f.getName(), f);
+		}
+
+		Map<String, List<Method>> named = new HashMap<String, List<Method>>();
+		for(Method m : methods) {
+			named.computeIfAbsent(m.getName(), name -> new ArrayList<Method>(1)).add(m);
+			signatures.merge(new Signature().set(m.getName(), m.getParameterTypes()), m, (first, second) -> {
+				return ((Method) first).isBridge() ? second : first;
+			});
+		}
+		named.forEach((name, list) -> {
+			overloads.put(name, Collections.unmodifiableList(list));
+		});
+
+		for(Constructor<?> k : constructors) {
+			Signature signature = new Signature().set(null, k.getParameterTypes());
+			signatures.put(signature, k);
+			declaredConstructors.put(signature, k);
+		}
+	}
+
+	/**
+	 * @return The shared metadata of the provided class, resolved on first request
+	 */
+	public static ClassMetadata of(Class<?> c) {
+		return cache.get(c);
+	}
+
+	public Class<?> getType() {
+		return c;
+	}
+
+	/**
+	 * @return A read-only view of the declared methods of the class
+	 */
+	public List<Method> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @return A read-only view of the declared constructors of the class
+	 */
+	public List<Constructor<?>> getConstructors() {
+		return constructors;
+	}
+
+	/**
+	 * @return A read-only view of the declared fields of the class
+	 */
+	public List<Field> getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return The declared field with the provided name, or null if there is none
+	 */
+	public Field getField(String name) {
+		return fieldsByName.get(name);
+	}
+
+	/**
+	 * @return The shared accessor of the declared field with the provided name
+	 * @throws InteractionContext when there is no such field, or it is not accessible
+	 * @see FluidObject#field(String)
+	 */
+	public FieldAccessor getAccessor(String name) throws InteractionContext {
+		FieldAccessor accessor = accessors.get(name);
+		if(accessor == null) {
+			Field f = fieldsByName.get(name);
+			if(f == null) {
+				throw new InteractionContext().context("No field %s on %s", name, c.getName());
+			}
+			accessor = FieldAccessor.of(f);
+			FieldAccessor previous = accessors.putIfAbsent(name, accessor);
+			accessor = previous == null ? accessor : previous;
+		}
+		return accessor;
+	}
+
+	/**
+	 * @return The accessors of the declared instance fields, in declaration order.
+	 * The returned array is shared and must not be modified.
+	 * @throws InteractionContext when one of the fields is not accessible
+	 * @see FluidObject#readFields()
+	 */
+	FieldAccessor[] getInstanceAccessors() throws InteractionContext {
+		FieldAccessor[] current = instanceAccessors;
+		if(current == null) {
+			List<FieldAccessor> list = new ArrayList<FieldAccessor>(fields.size());
+			for(Field f : fields) {
+				if(!Modifier.isStatic(f.getModifiers())) {
+					list.add(getAccessor(f.getName()));
+				}
+			}
+			instanceAccessors = current = list.toArray(new FieldAccessor[0]);
+		}
+		return current;
+	}
+
+	/**
+	 * @return A read-only view of the declared methods with the provided name,
+	 * which is empty if there are none
+	 */
+	public List<Method> getMethods(String name) {
+		return overloads.getOrDefault(name, List.of());
+	}
+
+	/**
+	 * Returns the declared method with the provided name and exactly the provided
+	 * parameter types, or else the first declared method with that name which is
+	 * callable with those types. Bridge methods are only returned if no other
+	 * method matches.
+	 *
+	 * @return The method, or null if there is none
+	 * @see FluidObject#isCallableWith
+	 */
+	public Method getMethod(String name, Class<?>... types) {
+		return (Method) lookup(name, types);
+	}
+
+	/**
+	 * Returns the declared constructor with exactly the provided parameter types,
+	 * or else the first declared constructor which is callable with those types.
+	 *
+	 * @return The constructor, or null if there is none
+	 * @see FluidObject#isCallableWith
+	 */
+	public Constructor<?> getConstructor(Class<?>... types) {
+		return (Constructor<?>) lookup(null, types);
+	}
+
+	/**
+	 * @return The shared invoker for the methods with the provided name
+	 * @see FluidObject#call(String, Object...)
+	 */
+	public MethodInvoker getInvoker(String name) {
+		return invokers.computeIfAbsent(name, n -> new MethodInvoker(this, n, true));
+	}
+
+	/**
+	 * Returns the factory of the declared constructor with exactly the provided parameter
+	 * types, as {@link Class#getDeclaredConstructor(Class...)} would find it, where null
+	 * stands for no parameters. Factories start on reflection and are linked once they are
+	 * used often, or right away through {@link InvocationSite#bind()}.
+	 *
+	 * @return The factory, or null if no constructor is declared with the provided types
+	 * @see ClassInteractor#instantiateClass(Class, String, Class[], Object[])
+	 */
+	public InvocationSite getFactory(Class<?>... types) {
+		Signature probe = probes.get();
+		Constructor<?> k = declaredConstructors.get(probe.set(null, types == null ? noParams : types));
+		probe.set(null, null);
+		return k == null ? null : getSite(k);
+	}
+
+	/**
+	 * @return The call site of the provided declared method or constructor, which is shared
+	 * by every invoker of this class and promoted like the sites of an {@link InvocationCache}
+	 */
+	InvocationSite getSite(Executable e) {
+		return sites.computeIfAbsent(e, executable -> new InvocationSite(executable, policy));
+	}
+
+	private Executable lookup(String name, Class<?>[] types) {
+		if(types == null) {
+			types = noParams;
+		}
+
+		Signature probe = probes.get();
+		Executable e = signatures.get(probe.set(name, types));
+		probe.set(null, null);
+
+		if(e == null) {
+			e = search(name, types);
+			if(isVisible(types)) {
+				signatures.putIfAbsent(new Signature().set(name, types.clone()), e == null ? none : e);
+			}
+		}
+		return e == none ? null : e;
+	}
+
+	/**
+	 * Returns true if the provided types are all visible from the loader of the class,
+	 * so that caching a lookup by those types cannot keep another loader reachable.
+	 */
+	Boolean isVisible(Class<?>[] types) {
+		for(Class<?> t : types) {
+			ClassLoader loader = t == null ? null : t.getClassLoader();
+			if(loader == null) {
+				continue;
+			}
+
+			ClassLoader l = c.getClassLoader();
+			while(l != null && l != loader) {
+				l = l.getParent();
+			}
+			if(l == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Executable search(String name, Class<?>[] types) {
+		Executable bridge = null;
+		for(Executable e : name == null ? constructors : getMethods(name)) {
+			if(FluidObject.isCallableWith(e, types)) {
+				if(!(e instanceof Method) || !((Method) e).isBridge()) {
+					return e;
+				} else if(bridge == null) {
+					bridge = e;
+				}
+			}
+		}
+		return bridge;
+	}
+
+	/**
+	 * Signature key, where constructors have no name. Lookups reuse a per thread
+	 * probe, stored keys are never modified after insertion.
+	 */
+	private static final class Signature {
+		String name;
+		Class<?>[] types;
+		int hash;
+
+		Signature set(String name, Class<?>[] types) {
+			this.name = name;
+			this.types = types;
+			hash = types == null ? 0 : (name == null ? 0 : name.hashCode()) * 31 + Arrays.hashCode(types);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Signature)) {
+				return false;
+			}
+			Signature s = (Signature) o;
+			return (name == null ? s.name == null : name.equals(s.name)) && Arrays.equals(types, s.types);
+		}
+	}
+}
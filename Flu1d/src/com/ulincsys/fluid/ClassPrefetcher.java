@@ -0,0 +1,191 @@
+package com.ulincsys.fluid;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads, links and initializes the dependency closure of imported classes on
+ * background threads, so that the first use of a class does not pay for
+ * resolving its dependencies.
+ *
+ * <p> The closure of a class is its superclass, its interfaces, and the
+ * parameter, return and exception types of its declared methods and
+ * constructors. It is followed up to the depth limit of the prefetcher,
+ * where the imported class itself is at depth zero. Each class is only
+ * prefetched once, and the closure is not followed through classes of the
+ * bootstrap loader, most of which are already loaded at startup. The
+ * prefetcher does not keep the classes it visited from being unloaded. </p>
+ *
+ * <p> Prefetching runs static initializers of the prefetched classes,
+ * unless initialization is disabled with {@link #setInitialize(Boolean)}. </p>
+ *
+ * @author ulincsys
+ * @see ClassInteractor#injectClass(Class, String)
+ */
+public class ClassPrefetcher {
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Marks the classes this prefetcher has queued. The mark is stored with each class
+	 * through a {@link ClassValue}, so that prefetched classes can still be unloaded.
+	 */
+	private final ClassValue<AtomicBoolean> visited = new ClassValue<AtomicBoolean>() {
+		@Override
+		protected AtomicBoolean computeValue(Class<?> c) {
+			return new AtomicBoolean();
+		}
+	};
+	private final Map<Class<?>, Integer> pending = new ConcurrentHashMap<Class<?>, Integer>();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private volatile Boolean enabled = false;
+	private volatile Boolean initialize = true;
+	private volatile int depth = 2;
+
+	public ClassPrefetcher() {
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+			Thread t = new Thread(runnable, "fluid-prefetch");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues the dependency closure of the provided class, if prefetching is enabled.
+	 *
+	 * @return True if the class was queued, else false
+	 */
+	public Boolean prefetch(Class<?> c) {
+		return enabled && submit(c, 0);
+	}
+
+	private Boolean submit(Class<?> c, int level) {
+		while(c.isArray()) {
+			c = c.getComponentType();
+		}
+
+		if(c.isPrimitive() || executor.isShutdown() || !visited.get(c).compareAndSet(false, true)) {
+			return false;
+		}
+
+		Class<?> target = c;
+		pending.put(target, level);
+		try {
+			executor.execute(() -> {
+				try {
+					fetch(target, level);
+					completed.increment();
+				} catch(Throwable t) {
+					failed.increment();
+				} finally {
+					pending.remove(target);
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			pending.remove(target);
+			return false;
+		}
+		return true;
+	}
+
+	private void fetch(Class<?> c, int level) throws ClassNotFoundException {
+		if(initialize) {
+			Class.forName(c.getName(), true, c.getClassLoader());
+		}
+
+		if(level >= depth || c.getClassLoader() == null) {
+			return;
+		}
+
+		if(c.getSuperclass() != null) {
+			submit(c.getSuperclass(), level + 1);
+		}
+		for(Class<?> i : c.getInterfaces()) {
+			submit(i, level + 1);
+		}
+		for(Method m : c.getDeclaredMethods()) {
+			submit(m.getReturnType(), level + 1);
+			fetch(m, level);
+		}
+		for(Constructor<?> k : c.getDeclaredConstructors()) {
+			fetch(k, level);
+		}
+	}
+
+	private void fetch(Executable e, int level) {
+		for(Class<?> p : e.getParameterTypes()) {
+			submit(p, level + 1);
+		}
+		for(Class<?> x : e.getExceptionTypes()) {
+			submit(x, level + 1);
+		}
+	}
+
+	/**
+	 * Stops the background threads. Queued classes are dropped.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		pending.clear();
+	}
+
+	/**
+	 * @return A read-only view of the classes queued or being prefetched, with their depth
+	 */
+	public Map<Class<?>, Integer> getPending() {
+		return Collections.unmodifiableMap(pending);
+	}
+
+	public void setEnabled(Boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets how far the dependency closure is followed from an imported class.
+	 * A depth of zero only prefetches the imported class itself.
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Enables or disables running static initializers of prefetched classes.
+	 * Classes are still loaded when disabled.
+	 */
+	public void setInitialize(Boolean initialize) {
+		this.initialize = initialize;
+	}
+
+	public Boolean isInitializing() {
+		return initialize;
+	}
+
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+}
@@ -0,0 +1,243 @@
+package com.ulincsys.fluid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An indexed jar or class directory, which serves class bytes by binary name.
+ * The jar central directory, or the directory tree, is read once when the
+ * source is opened, so later lookups are answered from the index without
+ * opening or scanning the source again.
+ *
+ * <p> Jars stay open until the source is closed. Directory sources also find
+ * class files written after they were opened, which are added to the index
+ * the first time they are read. </p>
+ *
+ * <p> A source records the timestamp and length of the jar when it is opened,
+ * or of each class file of a directory when it is read, so that a loader can
+ * tell when the classes it defined from the source are out of date, see
+ * {@link #isModified()}. Those stamps are compared at most once per
+ * {@value #checkInterval} milliseconds. </p>
+ *
+ * @author ulincsys
+ * @see FluidClassLoader#loadClass(File, String)
+ */
+public abstract class ClassSource implements Closeable {
+	/**
+	 * The minimum time between two comparisons of the stamps of a source, in milliseconds.
+	 */
+	public static final long checkInterval = 1000;
+
+	protected final File file;
+
+	private volatile long checked = System.nanoTime();
+	private volatile Boolean modified = false;
+
+	protected ClassSource(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens and indexes the provided jar or class directory.
+	 *
+	 * @throws IOException when the file is neither a readable jar nor a directory
+	 */
+	public static ClassSource open(File file) throws IOException {
+		if(file.isDirectory()) {
+			return new DirectorySource(file);
+		}
+		return new JarSource(file);
+	}
+
+	/**
+	 * @return The jar or directory of this source
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return A read-only view of the binary names of every indexed class
+	 */
+	public abstract Set<String> getClassNames();
+
+	/**
+	 * @return True if this source holds a class with the provided binary name, else false
+	 */
+	public abstract Boolean contains(String className);
+
+	/**
+	 * @return The bytes of the class with the provided binary name, or null if
+	 * this source holds no such class
+	 */
+	public abstract byte[] read(String className) throws IOException;
+
+	/**
+	 * Returns true if the jar changed since it was opened, or a class file of the
+	 * directory changed or was removed since it was read. The stamps are compared
+	 * again only if {@value #checkInterval} milliseconds passed since the last
+	 * comparison, and a source stays modified once a change was seen.
+	 *
+	 * @return True if the source is known to have changed, else false
+	 */
+	public Boolean isModified() {
+		if(!modified) {
+			long now = System.nanoTime();
+			if(now - checked >= TimeUnit.MILLISECONDS.toNanos(checkInterval)) {
+				checked = now;
+				modified = hasChanged();
+			}
+		}
+		return modified;
+	}
+
+	/**
+	 * Compares the stamps recorded by this source with the files on disk.
+	 *
+	 * @see #isModified()
+	 */
+	protected abstract Boolean hasChanged();
+
+	@Override
+	public void close() throws IOException {
+
+	}
+
+	@Override
+	public String toString() {
+		return file.getPath();
+	}
+
+	private static String className(String entry) {
+		return entry.substring(0, entry.length() - ".class".length()).replace('/', '.');
+	}
+
+	private static final class JarSource extends ClassSource {
+		private final ZipFile jar;
+		private final Map<String, ZipEntry> entries = new ConcurrentHashMap<String, ZipEntry>();
+		private final long lastModified, length;
+
+		JarSource(File file) throws IOException {
+			super(file);
+			lastModified = file.lastModified();
+			length = file.length();
+			jar = new ZipFile(file);
+
+			Enumeration<? extends ZipEntry> all = jar.entries();
+			while(all.hasMoreElements()) {
+				ZipEntry entry = all.nextElement();
+				String name = entry.getName();
+				if(name.endsWith(".class") && !entry.isDirectory() && !name.startsWith("META-INF/")) {
+					entries.put(className(name), entry);
+				}
+			}
+		}
+
+		@Override
+		public Set<String> getClassNames() {
+			return Collections.unmodifiableSet(entries.keySet());
+		}
+
+		@Override
+		public Boolean contains(String className) {
+			return entries.containsKey(className);
+		}
+
+		@Override
+		public byte[] read(String className) throws IOException {
+			ZipEntry entry = entries.get(className);
+			if(entry == null) {
+				return null;
+			}
+
+			try(InputStream in = jar.getInputStream(entry)) {
+				return in.readAllBytes();
+			}
+		}
+
+		@Override
+		protected Boolean hasChanged() {
+			return file.lastModified() != lastModified || file.length() != length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			jar.close();
+		}
+	}
+
+	private static final class DirectorySource extends ClassSource {
+		private final Path root;
+		private final Map<String, Path> entries = new ConcurrentHashMap<String, Path>();
+
+		/**
+		 * The timestamp and length of each class file when it was read.
+		 */
+		private final Map<Path, long[]> stamps = new ConcurrentHashMap<Path, long[]>();
+
+		DirectorySource(File file) throws IOException {
+			super(file);
+			root = file.toPath();
+
+			try(Stream<Path> paths = Files.walk(root)) {
+				paths.filter(path -> path.toString().endsWith(".class")).forEach(path -> {
+					entries.put(className(root.relativize(path).toString().replace(File.separatorChar, '/')), path);
+				});
+			}
+		}
+
+		@Override
+		public Set<String> getClassNames() {
+			return Collections.unmodifiableSet(entries.keySet());
+		}
+
+		@Override
+		public Boolean contains(String className) {
+			return entries.containsKey(className) || Files.isRegularFile(path(className));
+		}
+
+		@Override
+		public byte[] read(String className) throws IOException {
+			Path path = entries.get(className);
+			if(path == null) {
+				path = path(className);
+				if(!Files.isRegularFile(path)) {
+					return null;
+				}
+				entries.put(className, path);
+			}
+
+			File f = path.toFile();
+			stamps.put(path, new long[] { f.lastModified(), f.length() });
+			return Files.readAllBytes(path);
+		}
+
+		@Override
+		protected Boolean hasChanged() {
+			for(Map.Entry<Path, long[]> stamp : stamps.entrySet()) {
+				File f = stamp.getKey().toFile();
+				if(f.lastModified() != stamp.getValue()[0] || f.length() != stamp.getValue()[1]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private Path path(String className) {
+			return root.resolve(className.replace('.', File.separatorChar) + ".class");
+		}
+	}
+}
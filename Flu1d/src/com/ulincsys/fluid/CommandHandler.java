@@ -1,10 +1,14 @@
 package com.ulincsys.fluid;
 
+import java.io.File;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
 
 enum Commands {
-	EXIT, IMPORT, NEW, CALL, HEAP, CLASSES, RESULTS, RELOAD, ADAPT, COMPILE, NOP;
+	EXIT, IMPORT, NEW, BULK, CALL, HEAP, CLASSES, RESULTS, RELOAD, ADAPT, COMPILE, LINK, PREFETCH, STATS, NOP;
 }
 
 public class CommandHandler {
@@ -18,7 +22,7 @@ public class CommandHandler {
 			switch(Commands.valueOf(args[0].toUpperCase())) {
 			case IMPORT:
 				if(args.length < 2) {
-					console.log("Usage: import <className> [as <alias>]");
+					console.log("Usage: import <className> [as <alias>] [from <jar or directory>]");
 				} else {
 					reflectiveImport(args);
 				}
@@ -30,6 +34,13 @@ public class CommandHandler {
 					reflectiveInstantiate(args[1], args[2], args);
 				}
 				return Commands.NEW;
+			case BULK:
+				if(args.length < 4) {
+					console.log("Usage: bulk <className> <varName> <count> [-l] [-p] [args...]");
+				} else {
+					reflectiveBulkInstantiate(args[1], args[2], Integer.parseInt(args[3]), args);
+				}
+				return Commands.BULK;
 			case CALL:
 				if(args.length < 3) {
 					console.log("Usage: call <classOrVarName> <methodName> [args...]");
@@ -47,7 +58,8 @@ public class CommandHandler {
 				listResults();
 				return Commands.RESULTS;
 			case RELOAD:
-				C = new ClassInteractor();
+				C = C.reload(args.length > 1 && args[1].equalsIgnoreCase("keep"));
+				Fluid.C = C;
 				return Commands.RELOAD;
 			case ADAPT:
 				if(args.length < 3) {
@@ -57,12 +69,39 @@ public class CommandHandler {
 				}
 				return Commands.ADAPT;
 			case COMPILE:
-				if(args.length < 2) {
-					console.log("Usage: compile <filename>");
+				if(args.length < 2 || args[1].equals("-m") && args.length < 3) {
+					console.log("Usage: compile [-m] <filename>\n       compile <directory or glob>\n       compile -o [options...]");
+				} else if(args[1].equals("-o")) {
+					C.setCompilerOptions(List.of(args).subList(2, args.length));
+					console.formatln("Compiler options: %s", String.join(" ", C.getCompilerOptions()));
+				} else if(args[1].equals("-m")) {
+					compileInMemory(args[2]);
+				} else if(new File(args[1]).isDirectory() || args[1].matches(".*[*?\\[{].*")) {
+					compileBatch(args[1]);
 				} else {
 					compileFile(args[1]);
 				}
 				return Commands.COMPILE;
+			case LINK:
+				if(args.length < 2) {
+					console.log("Usage: link <on|off>");
+				} else {
+					C.getInvocationCache().setLinking(args[1].equalsIgnoreCase("on"));
+				}
+				return Commands.LINK;
+			case PREFETCH:
+				if(args.length < 2) {
+					listPrefetch();
+				} else {
+					C.getPrefetcher().setEnabled(args[1].equalsIgnoreCase("on"));
+					if(args.length > 2) {
+						C.getPrefetcher().setDepth(Integer.parseInt(args[2]));
+					}
+				}
+				return Commands.PREFETCH;
+			case STATS:
+				listStats();
+				return Commands.STATS;
 			case EXIT:
 				return Commands.EXIT;
 			default:
@@ -74,16 +113,57 @@ public class CommandHandler {
 		return Commands.NOP;
 	}
 	
+	// Compilation runs in the background, results are logged once each job completes
+	
 	private static void compileFile(String filename) {
-		console.logException(C.compileClass(filename));
+		C.compileClassAsync(filename).thenAccept(result -> {
+			console.logException(result);
+		});
+		logQueued(filename);
+	}
+	
+	private static void compileBatch(String directoryOrGlob) {
+		C.compileClassesAsync(directoryOrGlob).thenAccept(results -> {
+			int failed = 0;
+			for(InteractionContext result : results) {
+				if(!result.isSuccess()) {
+					++failed;
+					result.onMessage(message -> {
+						console.log(message);
+					});
+				}
+			}
+			console.formatln("Compiled %d sources, %d failed", results.size(), failed);
+		});
+		logQueued(directoryOrGlob);
+	}
+	
+	private static void compileInMemory(String filename) {
+		C.compileSourceAsync(new File(filename)).thenAccept(result -> {
+			result.onMessage(message -> {
+				console.log(message);
+			}).onException(e -> {
+				console.logException(e);
+			});
+		});
+		logQueued(filename);
+	}
+	
+	private static void logQueued(String source) {
+		CompilerService compiler = C.peekCompilerService();
+		if(compiler != null) {
+			console.formatln("Compilation of %s queued (%d pending)", source, compiler.getQueueDepth());
+		}
 	}
 	
 	private static void reflectiveImport(String[] args) {
-		FluidClassLoader loader = new FluidClassLoader(C);
+		FluidClassLoader loader = C.getClassLoader();
 		String classPath = args[1];
-		String alias = args.length == 4 ? args[3] : args[1];
+		String alias = args.length >= 4 && args[2].equalsIgnoreCase("as") ? args[3] : args[1];
+		String source = args.length >= 4 && args[args.length - 2].equalsIgnoreCase("from") ? args[args.length - 1] : null;
 		try {
-			C.injectClass(loader.loadUnknownClass(classPath), alias)
+			Class<?> c = source == null ? loader.loadUnknownClass(classPath) : loader.loadClass(new File(source), classPath);
+			C.injectClass(c, alias)
 			.onMessage(message -> {
 				console.log(message);
 			}).onTarget(target -> {
@@ -113,7 +193,10 @@ public class CommandHandler {
 		}
 	}
 	
-	private static Boolean parseArgs(String[] args, ArrayList<Object> objects, ArrayList<Class<?>> classes) {
+	/**
+	 * Parses the arguments of a command, starting at the provided index.
+	 */
+	private static Boolean parseArgs(String[] args, int from, ArrayList<Object> objects, ArrayList<Class<?>> classes) {
 		BiFunction<String, String, Boolean> parser = (value, type) -> {
 			try {
 				if(type.equalsIgnoreCase("int") || type.equalsIgnoreCase("integer")) {
@@ -145,7 +228,7 @@ public class CommandHandler {
 			return true;
 		};
 		
-		for(int i = 3; i < args.length; ++i) {
+		for(int i = from; i < args.length; ++i) {
 			String[] split = args[i].split(":");
 			if(split.length != 2) {
 				console.formatln("Error parsing %s as an argument", args[i]);
@@ -163,7 +246,7 @@ public class CommandHandler {
 		ArrayList<Object> objects = new ArrayList<Object>();
 		ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
 		
-		if(parseArgs(args, objects, classes)) {
+		if(parseArgs(args, 3, objects, classes)) {
 			C.instantiateClass(classPath, var, classes.toArray(new Class<?>[0]), objects.toArray())
 			.onMessage(message -> {
 				console.log(message);
@@ -173,13 +256,40 @@ public class CommandHandler {
 		}
 	}
 	
+	// Flags follow the count, -l stores a list instead of an array, -p creates in parallel
+	
+	private static void reflectiveBulkInstantiate(String classPath, String var, int count, String[] args) {
+		ArrayList<Object> objects = new ArrayList<Object>();
+		ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
+		
+		Boolean asList = false;
+		Boolean parallel = false;
+		int i = 4;
+		for(; i < args.length && args[i].startsWith("-"); ++i) {
+			asList |= args[i].equals("-l");
+			parallel |= args[i].equals("-p");
+		}
+		
+		if(parseArgs(args, i, objects, classes)) {
+			long start = System.nanoTime();
+			C.instantiateClasses(classPath, var, count, asList, parallel, classes.toArray(new Class<?>[0]), objects.toArray())
+			.onMessage(message -> {
+				console.log(message);
+			}).onException(e -> {
+				console.logException(e);
+			}).onSuccess(context -> {
+				console.formatln("Completed in %d ms", (System.nanoTime() - start) / 1000000);
+			});
+		}
+	}
+	
 	private static void reflectiveCall(String classOrVar, String method, String[] args) {
 		ArrayList<Object> objects = new ArrayList<Object>();
 		ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
 		
 		Boolean isClass = C.getClass(classOrVar) != null;
 		
-		if(parseArgs(args, objects, classes)) {
+		if(parseArgs(args, 3, objects, classes)) {
 			InteractionContext result;
 			if(isClass) {
 				result = C.callStaticMethod(classOrVar, method, classes.toArray(new Class<?>[0]), objects.toArray());
@@ -215,6 +325,45 @@ public class CommandHandler {
 			console.formatln("%s: %s", result, result.getClass());
 		});
 	}
+	
+	private static void listPrefetch() {
+		ClassPrefetcher prefetcher = C.getPrefetcher();
+		console.formatln("prefetch: %s, depth: %d, completed: %d, failed: %d, pending: %d",
+				prefetcher.isEnabled() ? "on" : "off", prefetcher.getDepth(),
+				prefetcher.getCompleted(), prefetcher.getFailed(), prefetcher.getPending().size());
+		prefetcher.getPending().forEach((c, depth) -> {
+			console.formatln("%s (depth %d)", c.getName(), depth);
+		});
+	}
+	
+	private static void listStats() {
+		InvocationCache cache = C.getInvocationCache();
+		console.log("Invocation cache:");
+		console.formatln("sites: %d, hits: %d, misses: %d, linking: %s",
+				cache.size(), cache.getHits(), cache.getMisses(), cache.isLinking() ? "on" : "off");
+		cache.getSites().forEach(site -> {
+			console.formatln("%s: %s (%d calls)", site.getMethod(), site.getTier(), site.getCalls());
+		});
+		
+		CompilerService compiler = C.peekCompilerService();
+		if(compiler != null) {
+			console.log("Compiler service:");
+			console.formatln("pending: %d, completed: %d, last: %d ms, average: %d ms", compiler.getQueueDepth(),
+					compiler.getCompletedJobs(), compiler.getLastJobMillis(), compiler.getAverageJobMillis());
+		}
+		
+		ClassLoadingMXBean loading = ManagementFactory.getClassLoadingMXBean();
+		console.log("Class loading:");
+		console.formatln("live generations: %d, loaded classes: %d, unloaded classes: %d",
+				FluidClassLoader.getLiveGenerations(), loading.getLoadedClassCount(), loading.getUnloadedClassCount());
+		PackageIndex index = C.getClassLoader().getPackageIndex();
+		console.formatln("indexed simple names: %d, known missing: %d, unindexed packages: %s",
+				index.size(), index.getMissingCount(), index.getUnindexedPackages());
+		
+		CompileCache compileCache = C.getCompileCache();
+		console.log("Compile cache:");
+		console.formatln("hits: %d, misses: %d", compileCache.getHits(), compileCache.getMisses());
+	}
 }
 
 
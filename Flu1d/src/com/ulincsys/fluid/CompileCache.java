@@ -0,0 +1,264 @@
+package com.ulincsys.fluid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Caches compiled class bytes by a hash of the compiled source, the
+ * compiler options and the class path, so that unchanged sources are
+ * not compiled again. Each class path entry is hashed with its stamp,
+ * the timestamp and length of a jar or the latest timestamp, count and
+ * total length of the class files of a directory, so that rebuilding a
+ * dependency under the same path invalidates the entries compiled
+ * against it. Source path entries are stamped the same way by their
+ * source files. Entries are persisted as one directory per key below
+ * the cache directory, where each class is stored as
+ * {@code <binary name>.class}. The most recently used entries are also
+ * kept in memory, up to {@value #defaultMemoryLimit} bytes of class files
+ * unless another limit is set. Evicted entries are read from disk again
+ * when they are next requested, if they were persisted.
+ *
+ * @author ulincsys
+ * @see ClassInteractor#compileSource(String, String)
+ */
+public class CompileCache {
+	/**
+	 * The default number of class file bytes kept in memory.
+	 */
+	public static final long defaultMemoryLimit = 16 * 1024 * 1024;
+
+	private final File directory;
+	private final LinkedHashMap<String, Map<String, byte[]>> entries = new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true);
+	private long memoryBytes;
+	private volatile long memoryLimit = defaultMemoryLimit;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public CompileCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the cache key of a compilation.
+	 *
+	 * @param name The name the source is compiled under
+	 * @param source The source text
+	 * @param options The compiler options which affect the output
+	 */
+	public static String key(String name, CharSequence source, List<String> options) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		update(digest, name);
+		update(digest, source);
+		for(String option : options) {
+			update(digest, option);
+		}
+		update(digest, System.getProperty("java.class.path", ""));
+		update(digest, System.getProperty("java.version", ""));
+
+		stamp(digest, System.getProperty("java.class.path", ""), ".class");
+		for(int i = 0; i + 1 < options.size(); ++i) {
+			String option = options.get(i);
+			if(option.equals("-cp") || option.equals("-classpath") || option.equals("--class-path")) {
+				stamp(digest, options.get(i + 1), ".class");
+			} else if(option.equals("-sourcepath") || option.equals("--source-path")) {
+				stamp(digest, options.get(i + 1), ".java");
+			}
+		}
+
+		StringBuilder key = new StringBuilder();
+		for(byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Hashes the stamp of every entry of the provided class or source path, where
+	 * directories are stamped by their files with the provided extension.
+	 */
+	private static void stamp(MessageDigest digest, String path, String extension) {
+		for(String entry : path.split(File.pathSeparator)) {
+			File file = new File(entry);
+			long[] stamp = { file.lastModified(), file.length(), 0 };
+			if(file.isDirectory()) {
+				try(Stream<Path> paths = Files.walk(file.toPath())) {
+					paths.filter(p -> p.toString().endsWith(extension)).map(Path::toFile).forEach(f -> {
+						stamp[0] = Math.max(stamp[0], f.lastModified());
+						stamp[1] += f.length();
+						++stamp[2];
+					});
+				} catch(IOException | UncheckedIOException e) {
+					// Hashed with what could be read, an unreadable entry changes the key once readable
+				}
+			}
+			update(digest, entry + ":" + stamp[0] + ":" + stamp[1] + ":" + stamp[2]);
+		}
+	}
+
+	private static void update(MessageDigest digest, CharSequence value) {
+		digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * @return The cached class bytes by binary name, or null if the key is not cached
+	 */
+	public Map<String, byte[]> get(String key) {
+		Map<String, byte[]> classes;
+		synchronized(entries) {
+			classes = entries.get(key);
+		}
+		if(classes == null) {
+			classes = read(new File(directory, key));
+			if(classes != null) {
+				remember(key, classes);
+			}
+		}
+
+		if(classes == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return classes;
+	}
+
+	/**
+	 * Caches the provided class bytes under the given key. The entry is only
+	 * persisted if the directory holding the cache already exists, so that an
+	 * in-memory compile never creates the compilation directory. Failing to
+	 * persist the entry only loses it for later sessions.
+	 */
+	public void put(String key, Map<String, byte[]> classes) {
+		remember(key, classes);
+		if(!directory.getAbsoluteFile().getParentFile().isDirectory()) {
+			return;
+		}
+
+		File entry = new File(directory, key);
+		File temp = new File(directory, key + ".tmp");
+		try {
+			Files.createDirectories(temp.toPath());
+			for(Map.Entry<String, byte[]> c : classes.entrySet()) {
+				Files.write(new File(temp, c.getKey() + ".class").toPath(), c.getValue());
+			}
+			Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			delete(temp);
+		}
+	}
+
+	/**
+	 * Keeps the provided entry in memory, within the memory limit.
+	 */
+	private void remember(String key, Map<String, byte[]> classes) {
+		synchronized(entries) {
+			Map<String, byte[]> previous = entries.put(key, classes);
+			if(previous != null) {
+				memoryBytes -= size(previous);
+			}
+			memoryBytes += size(classes);
+			evict();
+		}
+	}
+
+	/**
+	 * Drops the least recently used entries from memory until the memory limit is met.
+	 * Must be called with the entries locked.
+	 */
+	private void evict() {
+		Iterator<Map<String, byte[]>> eldest = entries.values().iterator();
+		while(memoryBytes > memoryLimit && eldest.hasNext()) {
+			memoryBytes -= size(eldest.next());
+			eldest.remove();
+		}
+	}
+
+	private static long size(Map<String, byte[]> classes) {
+		long size = 0;
+		for(byte[] bytes : classes.values()) {
+			size += bytes.length;
+		}
+		return size;
+	}
+
+	private static Map<String, byte[]> read(File entry) {
+		File[] files = entry.listFiles((dir, name) -> name.endsWith(".class"));
+		if(files == null || files.length == 0) {
+			return null;
+		}
+
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		try {
+			for(File f : files) {
+				String name = f.getName();
+				classes.put(name.substring(0, name.length() - ".class".length()), Files.readAllBytes(f.toPath()));
+			}
+		} catch(IOException e) {
+			return null;
+		}
+		return classes;
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+
+	/**
+	 * Sets the number of class file bytes kept in memory. Entries evicted
+	 * from memory remain available if they were persisted.
+	 */
+	public void setMemoryLimit(long bytes) {
+		synchronized(entries) {
+			memoryLimit = bytes;
+			evict();
+		}
+	}
+
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	/**
+	 * @return The number of class file bytes kept in memory
+	 */
+	public long getMemoryBytes() {
+		synchronized(entries) {
+			return memoryBytes;
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+}
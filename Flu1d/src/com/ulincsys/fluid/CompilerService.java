@@ -0,0 +1,109 @@
+package com.ulincsys.fluid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+/**
+ * A long lived compiler which runs compile jobs one at a time on a
+ * background thread. The standard file manager is kept open between
+ * jobs, so the platform and class path archives it has opened and
+ * indexed stay warm across compilations.
+ *
+ * <p> The worker thread is a daemon, and exits after five idle minutes.
+ * The file manager outlives it, and is reused by the next job. </p>
+ *
+ * @author ulincsys
+ * @see ClassInteractor#compileClassAsync(String)
+ */
+public class CompilerService {
+	private final JavaCompiler compiler;
+	private final ThreadPoolExecutor executor;
+	private StandardJavaFileManager fileManager;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private volatile long lastNanos;
+
+	public CompilerService(JavaCompiler compiler) {
+		this.compiler = compiler;
+		executor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), runnable -> {
+			Thread t = new Thread(runnable, "fluid-compiler");
+			t.setDaemon(true);
+			return t;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues a job, which may use {@link #compile} to run the compiler.
+	 * Jobs must not wait on other jobs of this service.
+	 *
+	 * @return A future completed with the result of the job
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> job) {
+		return CompletableFuture.supplyAsync(() -> {
+			long start = System.nanoTime();
+			try {
+				return job.get();
+			} finally {
+				lastNanos = System.nanoTime() - start;
+				totalNanos.add(lastNanos);
+				completed.increment();
+			}
+		}, executor);
+	}
+
+	/**
+	 * Compiles the provided units with the warm file manager of this service.
+	 * Must only be called from a job running on this service.
+	 *
+	 * @param output The map receiving the compiled class bytes by binary name
+	 * @return True if compilation succeeded, else false
+	 */
+	Boolean compile(Iterable<? extends JavaFileObject> units, List<String> options,
+			DiagnosticListener<? super JavaFileObject> diagnostics, Map<String, byte[]> output) {
+		if(fileManager == null) {
+			fileManager = compiler.getStandardFileManager(null, null, null);
+		}
+
+		MemoryFileManager memory = new MemoryFileManager(fileManager, false);
+		Boolean success = compiler.getTask(null, memory, diagnostics, options, null, units).call();
+		output.putAll(memory.getClasses());
+		return success;
+	}
+
+	public JavaCompiler getCompiler() {
+		return compiler;
+	}
+
+	/**
+	 * @return The number of jobs queued or running
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size() + executor.getActiveCount();
+	}
+
+	public long getCompletedJobs() {
+		return completed.sum();
+	}
+
+	public long getLastJobMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastNanos);
+	}
+
+	public long getAverageJobMillis() {
+		long jobs = completed.sum();
+		return jobs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / jobs);
+	}
+}
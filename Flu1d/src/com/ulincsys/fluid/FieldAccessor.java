@@ -0,0 +1,282 @@
+package com.ulincsys.fluid;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes one declared field through a {@link VarHandle}, which
+ * is linked once and shared by every {@link FluidObject} of the class.
+ *
+ * <p> The get and set modes of the handle are adapted once to take an
+ * {@link Object} receiver, which static fields ignore, and are invoked
+ * exactly, so that no call adapts the handle to its arguments again. </p>
+ *
+ * <p> The primitive accessors read and write fields of every primitive
+ * type without boxing. Fields of other types go through {@link #get(Object)}
+ * and {@link #set(Object, Object)}, or are converted as by a method call. </p>
+ *
+ * @author ulincsys
+ * @see FluidObject#field(String)
+ * @see ClassMetadata#getAccessor(String)
+ */
+public class FieldAccessor {
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private final Field field;
+	private final Boolean isStatic;
+
+	/**
+	 * Typed as (Object)T and (Object, T)void, where T is the type of the field.
+	 */
+	private final MethodHandle getter, setter;
+
+	/**
+	 * Typed as (Object)Object and (Object, Object)void.
+	 */
+	private final MethodHandle boxedGetter, boxedSetter;
+
+	private FieldAccessor(Field field, VarHandle handle) {
+		this.field = field;
+		isStatic = Modifier.isStatic(field.getModifiers());
+
+		MethodHandle get = handle.toMethodHandle(VarHandle.AccessMode.GET);
+		MethodHandle set = handle.toMethodHandle(VarHandle.AccessMode.SET);
+		if(isStatic) {
+			get = MethodHandles.dropArguments(get, 0, Object.class);
+			set = MethodHandles.dropArguments(set, 0, Object.class);
+		}
+
+		Class<?> t = field.getType();
+		getter = get.asType(MethodType.methodType(t, Object.class));
+		setter = set.asType(MethodType.methodType(void.class, Object.class, t));
+		boxedGetter = get.asType(MethodType.methodType(Object.class, Object.class));
+		boxedSetter = set.asType(MethodType.methodType(void.class, Object.class, Object.class));
+	}
+
+	/**
+	 * Links the provided field, with private access if its package is open to Fluid.
+	 *
+	 * @throws InteractionContext when the field is not accessible
+	 */
+	static FieldAccessor of(Field f) throws InteractionContext {
+		try {
+			return new FieldAccessor(f, MethodHandles.privateLookupIn(f.getDeclaringClass(), lookup).unreflectVarHandle(f));
+		} catch(IllegalAccessException | RuntimeException e) {
+			try {
+				return new FieldAccessor(f, lookup.unreflectVarHandle(f));
+			} catch(IllegalAccessException ex) {
+				throw new InteractionContext().context("Field %s is not accessible", f).context(ex);
+			}
+		}
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public String getName() {
+		return field.getName();
+	}
+
+	public Class<?> getType() {
+		return field.getType();
+	}
+
+	public Boolean isStatic() {
+		return isStatic;
+	}
+
+	/**
+	 * @return The value of the field, boxed if it is primitive
+	 * @throws InteractionContext when the receiver is not an instance of the declaring class
+	 */
+	public Object get(Object o) throws InteractionContext {
+		try {
+			return (Object) boxedGetter.invokeExact(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	/**
+	 * @throws InteractionContext when the field is final, or the receiver or value
+	 * do not match the field
+	 */
+	public void set(Object o, Object value) throws InteractionContext {
+		try {
+			boxedSetter.invokeExact(o, value);
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public int getInt(Object o) throws InteractionContext {
+		try {
+			return field.getType() == int.class ? (int) getter.invokeExact(o) : (int) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setInt(Object o, int value) throws InteractionContext {
+		try {
+			if(field.getType() == int.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public long getLong(Object o) throws InteractionContext {
+		try {
+			return field.getType() == long.class ? (long) getter.invokeExact(o) : (long) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setLong(Object o, long value) throws InteractionContext {
+		try {
+			if(field.getType() == long.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public double getDouble(Object o) throws InteractionContext {
+		try {
+			return field.getType() == double.class ? (double) getter.invokeExact(o) : (double) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setDouble(Object o, double value) throws InteractionContext {
+		try {
+			if(field.getType() == double.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public boolean getBoolean(Object o) throws InteractionContext {
+		try {
+			return field.getType() == boolean.class ? (boolean) getter.invokeExact(o) : (boolean) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setBoolean(Object o, boolean value) throws InteractionContext {
+		try {
+			if(field.getType() == boolean.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public float getFloat(Object o) throws InteractionContext {
+		try {
+			return field.getType() == float.class ? (float) getter.invokeExact(o) : (float) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setFloat(Object o, float value) throws InteractionContext {
+		try {
+			if(field.getType() == float.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public short getShort(Object o) throws InteractionContext {
+		try {
+			return field.getType() == short.class ? (short) getter.invokeExact(o) : (short) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setShort(Object o, short value) throws InteractionContext {
+		try {
+			if(field.getType() == short.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public byte getByte(Object o) throws InteractionContext {
+		try {
+			return field.getType() == byte.class ? (byte) getter.invokeExact(o) : (byte) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setByte(Object o, byte value) throws InteractionContext {
+		try {
+			if(field.getType() == byte.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	public char getChar(Object o) throws InteractionContext {
+		try {
+			return field.getType() == char.class ? (char) getter.invokeExact(o) : (char) getter.invoke(o);
+		} catch(Throwable e) {
+			throw failure("reading", e);
+		}
+	}
+
+	public void setChar(Object o, char value) throws InteractionContext {
+		try {
+			if(field.getType() == char.class) {
+				setter.invokeExact(o, value);
+			} else {
+				setter.invoke(o, value);
+			}
+		} catch(Throwable e) {
+			throw failure("writing", e);
+		}
+	}
+
+	private InteractionContext failure(String access, Throwable t) {
+		Exception e = t instanceof Exception ? (Exception) t : new InvocationTargetException(t);
+		return new InteractionContext().context("Error %s field %s", access, field).context(e);
+	}
+}
@@ -1,15 +1,37 @@
 package com.ulincsys.fluid;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
 public class Fluid {
 	public static Console console;
 	public static ClassInteractor C;
 	
 	public static void main(String[] args) {
+		if(args.length > 0 && args[0].equals("--train")) {
+			train();
+			return;
+		}
+		
 		console = new Console();
 		C = new ClassInteractor();
 		CommandHandler.console = console;
 		CommandHandler.C = C;
 		
+		IndexSnapshot.of(C).restore(C).onSuccess(context -> {
+			context.onMessage(message -> {
+				console.log(message);
+			});
+		});
+		
 		console.start();
 		try {
 			console.join();
@@ -18,39 +40,74 @@ public class Fluid {
 			e.printStackTrace();
 		}
 		
+		try {
+			IndexSnapshot.of(C).save(C);
+		} catch(IOException e) {
+			console.log("Could not write index snapshot:");
+			console.logException(e);
+		}
+	}
+	
+	// ----------------------------------------------------------------------------- TRAINING
+	
+	// A scripted session through the common console paths, run by the launcher with
+	// -XX:DumpLoadedClassList so that the classes it loads can be archived for sharing.
+	
+	private static final String trainingSource = "public class Training {\n"
+			+ "	public Integer twice(Integer x) { return 2 * x; }\n"
+			+ "}\n";
+	
+	private static final String[] trainingScript = {
+			"import StringBuilder as SB\n"
+			+ "new StringBuilder sb fluid:string\n"
+			+ "call sb append cds:string\n"
+			+ "call sb length\n"
+			+ "import java.util.ArrayList from %1$s\n"
+			+ "adapt BigInteger 42\n"
+			+ "y\n"
+			+ "compile -m %2$s\n"
+			+ "exit\n",
+			"new Training t\n"
+			+ "call t twice 21:int\n"
+			+ "call t missing\n"
+			+ "heap\n"
+			+ "classes\n"
+			+ "results\n"
+			+ "prefetch\n"
+			+ "stats\n"
+			+ "exit\n"
+	};
+	
+	/**
+	 * Runs the training session in a temporary compilation directory, discarding
+	 * its output. The index snapshot is not written.
+	 */
+	private static void train() {
+		PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+		try {
+			File dir = Files.createTempDirectory("fluid-train").toFile();
+			File source = new File(dir, "Training.java");
+			Files.writeString(source.toPath(), trainingSource);
+			
+			C = new ClassInteractor(new File(dir, "compiledClasses").getPath());
+			CommandHandler.C = C;
+			for(String script : trainingScript) {
+				console = new Console(new ByteArrayInputStream(String.format(script, dir, source)
+						.getBytes(StandardCharsets.UTF_8)), discard);
+				CommandHandler.console = console;
+				console.start();
+				console.join();
+				
+				while(C.peekCompilerService() != null && C.peekCompilerService().getQueueDepth() > 0) {
+					Thread.sleep(10);
+				}
+			}
+			try(Stream<Path> files = Files.walk(dir.toPath())) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+			System.out.println("Training run completed");
+		} catch(IOException | InterruptedException e) {
+			System.out.println("Training run failed: " + e);
+		}
 	}
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
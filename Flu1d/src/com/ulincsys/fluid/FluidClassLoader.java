@@ -2,21 +2,85 @@ package com.ulincsys.fluid;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for loading classes from multiple sources at runtime
  * 
+ * <p> Every {@link ClassInteractor} owns one generation loader, which is the
+ * parent of every other loader created on behalf of that interactor. When the
+ * interactor is dropped, for instance on reload, the whole generation becomes
+ * unreachable and its classes can be unloaded. </p>
+ * 
+ * <p> Classes loaded from a jar or class directory are defined by one child
+ * loader per registered {@link ClassSource}, which is indexed once and kept
+ * for the lifetime of the generation, until the jar or one of the class files
+ * it served changes. The source is then registered again with a new child
+ * loader, so that classes are never served from outdated bytes, and the
+ * replaced source is closed. Classes already defined from it stay valid, but
+ * the replaced loader can no longer load classes it had not loaded yet. </p>
+ * 
+ * <p> Loaders are parallel capable. Classes are loaded and defined under a lock
+ * per class name, so independent classes are defined concurrently. </p>
+ * 
  * @author ulincsys
  * @see ClassInteractor
  */
 public class FluidClassLoader extends ClassLoader {
+	private static final Set<Reference<FluidClassLoader>> generations = ConcurrentHashMap.newKeySet();
+	private static final ReferenceQueue<FluidClassLoader> collected = new ReferenceQueue<FluidClassLoader>();
+	
+	static {
+		registerAsParallelCapable();
+	}
+	
 	ClassInteractor C;
+	private final Map<String, byte[]> definitions = new ConcurrentHashMap<String, byte[]>();
+	private final Map<File, FluidClassLoader> sources = new ConcurrentHashMap<File, FluidClassLoader>();
+	private final ClassSource source;
+	private volatile PackageIndex packageIndex;
 	
 	public FluidClassLoader(ClassInteractor C) {
-		super(C.getClass().getClassLoader());
+		this(C, C.getClass().getClassLoader());
+	}
+	
+	public FluidClassLoader(ClassInteractor C, ClassLoader parent) {
+		this(C, parent, null);
+	}
+	
+	private FluidClassLoader(ClassInteractor C, ClassLoader parent, ClassSource source) {
+		super(parent);
 		this.C = C;
+		this.source = source;
+	}
+	
+	/**
+	 * Creates the generation loader of the provided interactor, which is
+	 * tracked until it has been garbage collected.
+	 * 
+	 * @see #getLiveGenerations()
+	 */
+	static FluidClassLoader generation(ClassInteractor C) {
+		FluidClassLoader loader = new FluidClassLoader(C);
+		generations.add(new WeakReference<FluidClassLoader>(loader, collected));
+		return loader;
+	}
+	
+	/**
+	 * @return The number of generation loaders which have not been garbage collected yet
+	 */
+	public static int getLiveGenerations() {
+		for(Reference<? extends FluidClassLoader> ref = collected.poll(); ref != null; ref = collected.poll()) {
+			generations.remove(ref);
+		}
+		return generations.size();
 	}
 	
 	@Override
@@ -24,27 +88,156 @@ public class FluidClassLoader extends ClassLoader {
 		return super.loadClass(forName);
 	}
 	
+	/**
+	 * Registers compiled classes with this loader. Each class is defined
+	 * from its bytes the first time it is loaded through this loader.
+	 * 
+	 * @param classes The class bytes to register, by binary name
+	 * @see MemoryFileManager
+	 */
+	public void define(Map<String, byte[]> classes) {
+		definitions.putAll(classes);
+		clearMissing();
+	}
+	
+	/**
+	 * Called with the class loading lock of the provided name held.
+	 * 
+	 * @see ClassLoader#getClassLoadingLock(String)
+	 */
+	@Override
+	protected Class<?> findClass(String forName) throws ClassNotFoundException {
+		byte[] bytes = definitions.remove(forName);
+		if(bytes == null && source != null) {
+			try {
+				bytes = source.read(forName);
+			} catch(IOException e) {
+				throw new ClassNotFoundException("Could not read class " + forName + " from " + source, e);
+			}
+		}
+		
+		if(bytes == null) {
+			return super.findClass(forName);
+		}
+		return defineClass(forName, bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Loads a class from the provided jar or class directory. The file is opened
+	 * and indexed on first use, later loads from the same file are served by the
+	 * same loader as long as the file is unchanged.
+	 * 
+	 * @see #register(File)
+	 */
 	public Class<?> loadClass(File file, String forName) throws IOException, ClassNotFoundException {
-		URLClassLoader loader = new URLClassLoader(new URL[] { file.toURI().toURL() }, this);
-		try {
-			return loader.loadClass(forName);
-		} finally {
-			loader.close();
+		return register(file).loadClass(forName);
+	}
+	
+	/**
+	 * Opens and indexes the provided jar or class directory, unless it is
+	 * already registered with this loader and unchanged since.
+	 * 
+	 * @return The loader defining the classes of that jar or directory
+	 * @see ClassSource#isModified()
+	 */
+	public FluidClassLoader register(File file) throws IOException {
+		File key = file.getCanonicalFile();
+		FluidClassLoader loader = sources.get(key);
+		if(loader != null && !loader.source.isModified()) {
+			return loader;
 		}
+		
+		synchronized(sources) {
+			loader = sources.get(key);
+			if(loader == null || loader.source.isModified()) {
+				FluidClassLoader replaced = loader;
+				loader = new FluidClassLoader(C, this, ClassSource.open(key));
+				sources.put(key, loader);
+				clearMissing();
+				
+				if(replaced != null) {
+					try {
+						replaced.source.close();
+					} catch(IOException e) {
+						// The replaced source is no longer used either way
+					}
+				}
+			}
+		}
+		return loader;
+	}
+	
+	/**
+	 * @return The jar or class directory served by this loader, or null
+	 */
+	public ClassSource getSource() {
+		return source;
+	}
+	
+	/**
+	 * @return A read-only view of every jar or class directory registered with this loader
+	 */
+	public Collection<FluidClassLoader> getSources() {
+		return Collections.unmodifiableCollection(sources.values());
 	}
 	
+	/**
+	 * Resolves a simple class name against the packages of the class path of the
+	 * interactor, in class path order, through the package index. Indexed packages
+	 * are only tried if they hold such a class, packages which could not be indexed
+	 * are probed. Names which were not found are not probed again until the class
+	 * path changes, classes are defined or a source is registered.
+	 * 
+	 * @see PackageIndex#getCandidates(String)
+	 */
 	public Class<?> loadSimpleClass(String forName) throws ClassNotFoundException {
-		for(String path : C.classPath) {
+		PackageIndex index = getPackageIndex();
+		if(index.isMissing(forName)) {
+			throw new ClassNotFoundException("Class not found in path with simple name: " + forName);
+		}
+		
+		for(String name : index.getCandidates(forName)) {
 			try {
-				return loadClass(String.format("%s.%s", path, forName));
-			} catch(Exception e) {
+				return loadClass(name);
+			} catch(Exception | LinkageError e) {
 				continue; // just for fun
 			}
 		}
 		
+		index.markMissing(forName);
 		throw new ClassNotFoundException("Class not found in path with simple name: " + forName);
 	}
 	
+	/**
+	 * @return The package index of this loader, updated to the current class path
+	 * of the interactor
+	 */
+	public PackageIndex getPackageIndex() {
+		PackageIndex index = packageIndex;
+		if(index == null) {
+			synchronized(this) {
+				if(packageIndex == null) {
+					packageIndex = new PackageIndex();
+				}
+				index = packageIndex;
+			}
+		}
+		return index.update(C.classPath);
+	}
+	
+	/**
+	 * Clears the names marked missing by the package index of this loader and of every
+	 * Fluid loader above it, since classes loadable through them may have been added.
+	 */
+	private void clearMissing() {
+		for(ClassLoader l = this; l instanceof FluidClassLoader; l = l.getParent()) {
+			PackageIndex index = ((FluidClassLoader) l).packageIndex;
+			if(index != null) {
+				index.clearMissing();
+			}
+		}
+	}
+	
 	public Class<?> loadUnknownClass(String forName) throws ClassNotFoundException {
 		if(forName.indexOf('.') == -1) {
 			return loadSimpleClass(forName);
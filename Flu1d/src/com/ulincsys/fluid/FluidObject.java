@@ -2,15 +2,19 @@ package com.ulincsys.fluid;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is a meta-object class which focuses on making reflection
  * easier to integrate into real workflows. 
  * 
+ * <p> The reflective metadata of each class is resolved once and shared
+ * by every FluidObject of that class, see {@link ClassMetadata}. </p>
+ * 
  * @author ulincsys
  * @see ClassInteractor
  * @see FluidClassLoader
@@ -22,11 +26,16 @@ public class FluidObject {
 	Object o;
 	Class<?> c;
 	
-	List<Method> methods;
-	List<Constructor<?>> constructors;
+	ClassMetadata metadata;
 	
-	private static ClassInteractor interaction = new ClassInteractor();
-	private static FluidClassLoader loader = new FluidClassLoader(interaction);
+	/**
+	 * Holds the interactor shared by every {@link FluidObject}, which is only
+	 * created once an object is instantiated or a class is loaded by name.
+	 */
+	private static final class Shared {
+		static final ClassInteractor interaction = new ClassInteractor();
+		static final FluidClassLoader loader = new FluidClassLoader(interaction);
+	}
 	
 	private FluidObject() {
 
@@ -49,8 +58,7 @@ public class FluidObject {
 		
 		this.o = o;
 		c = o.getClass();
-		methods = Arrays.asList(c.getDeclaredMethods());
-		constructors = Arrays.asList(c.getDeclaredConstructors());
+		metadata = ClassMetadata.of(c);
 	}
 	
 	/**
@@ -62,8 +70,7 @@ public class FluidObject {
 		FluidObject f = new FluidObject();
 		
 		f.c = c;
-		f.methods = Arrays.asList(c.getDeclaredMethods());
-		f.constructors = Arrays.asList(c.getDeclaredConstructors());
+		f.metadata = ClassMetadata.of(c);
 		
 		return f;
 	}
@@ -78,7 +85,7 @@ public class FluidObject {
 	 * class name
 	 */
 	public static FluidObject fromClass(String forName) throws ClassNotFoundException {
-		Class<?> c = loader.loadClass(forName);
+		Class<?> c = Shared.loader.loadClass(forName);
 		
 		return fromClass(c);
 	}
@@ -117,9 +124,9 @@ public class FluidObject {
 	 * @throws InteractionContext when an exception is encountered during instantiation
 	 */
 	public Object init(Object... parameters) throws InteractionContext {
-		return interaction.instantiateClass(c, null, FluidUtils.toTypeArray(parameters), parameters)
+		return Shared.interaction.instantiateClass(c, null, FluidUtils.toTypeArray(parameters), parameters)
 				.onException((c, e) -> {
-					throw c;
+					throw c.withStackTrace();
 				}).onSuccess(c -> {
 					c.previous(o);
 					o = c.getTarget();
@@ -136,12 +143,7 @@ public class FluidObject {
 	 * @see FluidObject#isCallableWith
 	 */
 	public Boolean hasConstructor(Class<?>... parameters) {
-		for(Constructor<?> c : constructors) {
-			if(isCallableWith(c, parameters)) {
-				return true;
-			}
-		}
-		return false;
+		return metadata.getConstructor(parameters) != null;
 	}
 	
 	/**
@@ -152,7 +154,7 @@ public class FluidObject {
 	 * @param name The name of the methods to search for
 	 */
 	public Boolean hasMethod(String name) {
-		return getMethodsWithName(name).size() > 0;
+		return !getMethodsWithName(name).isEmpty();
 	}
 	
 	/**
@@ -178,32 +180,234 @@ public class FluidObject {
 	 * @see Method
 	 */
 	public Method getMethod(String name, Class<?>... types) {
-		for(Method m : getMethodsWithName(name)) {
-			if(isCallableWith(m, types)) {
-				return m;
-			}
-		}
-		return null;
+		return metadata.getMethod(name, types);
 	}
 	
 	/**
-	 * Counts the number of methods contained in the class represented
-	 * by this {@link FluidObject} with the given name.
+	 * Returns the methods contained in the class represented
+	 * by this {@link FluidObject} with the given name, as a read-only list.
 	 * 
 	 * @param name The name of the methods to search for
 	 * @see FluidObject#hasMethod
 	 * @see Method
 	 */
 	public List<Method> getMethodsWithName(String name) {
-		List<Method> namedMethods = new LinkedList<Method>();
+		return metadata.getMethods(name);
+	}
+	
+	/**
+	 * Calls the method with the given name on the object referenced by this
+	 * {@link FluidObject}, choosing the overload by the runtime types of the
+	 * provided arguments. Static methods may be called on uninitialized
+	 * FluidObjects.
+	 * 
+	 * @param name The name of the method to call
+	 * @param args The arguments of the call
+	 * @return The value returned by the method, or null for void methods
+	 * @throws InteractionContext when no overload accepts the arguments, or
+	 * the method throws
+	 * @see MethodInvoker
+	 */
+	public Object call(String name, Object... args) throws InteractionContext {
+		return metadata.getInvoker(name).invoke(o, args);
+	}
+	
+	/**
+	 * Returns a reusable invoker for the methods of the class represented by this
+	 * {@link FluidObject} with the given name, which may be invoked with any receiver
+	 * of that class. If parameter types are provided, the matching overload is
+	 * resolved right away.
+	 * 
+	 * @param name The name of the methods to invoke
+	 * @param types The expected parameter types, or none to resolve overloads on first call
+	 * @throws InteractionContext when no method with the given name accepts the
+	 * provided types
+	 * @see MethodInvoker
+	 */
+	public MethodInvoker bind(String name, Class<?>... types) throws InteractionContext {
+		if(getMethodsWithName(name).isEmpty()) {
+			throw new InteractionContext().context("No method %s found on %s", name, c.getName());
+		}
 		
-		for(Method m : methods) {
-			if(m.getName().equals(name)) {
-				namedMethods.add(m);
-			}
+		if(types.length == 0) {
+			return metadata.getInvoker(name);
 		}
 		
-		return namedMethods;
+		MethodInvoker invoker = new MethodInvoker(metadata, name, false);
+		invoker.prime(types);
+		return invoker;
+	}
+	
+	/**
+	 * Returns the fields declared by the class represented by this
+	 * {@link FluidObject}, as a read-only list.
+	 * 
+	 * @see Field
+	 */
+	public List<Field> getFields() {
+		return metadata.getFields();
+	}
+	
+	/**
+	 * Returns true if the class represented by this {@link FluidObject}
+	 * declares a field with the given name, or false if it does not.
+	 * 
+	 * @param name The name of the field to search for
+	 */
+	public Boolean hasField(String name) {
+		return metadata.getField(name) != null;
+	}
+	
+	/**
+	 * Returns the shared accessor of the declared field with the given name,
+	 * which may be used with any instance of the class represented by this
+	 * {@link FluidObject}.
+	 * 
+	 * @param name The name of the field
+	 * @throws InteractionContext when there is no such field, or it is not accessible
+	 * @see FieldAccessor
+	 */
+	public FieldAccessor field(String name) throws InteractionContext {
+		return metadata.getAccessor(name);
+	}
+	
+	/**
+	 * Returns the value of the declared field with the given name on the object
+	 * referenced by this {@link FluidObject}. Static fields may be read on
+	 * uninitialized FluidObjects. Primitive values are boxed, see the typed
+	 * accessors such as {@link #getInt(String)} to avoid boxing.
+	 * 
+	 * @param name The name of the field
+	 * @throws InteractionContext when there is no such field, or it cannot be read
+	 */
+	public Object get(String name) throws InteractionContext {
+		return metadata.getAccessor(name).get(o);
+	}
+	
+	/**
+	 * Sets the declared field with the given name on the object referenced
+	 * by this {@link FluidObject}.
+	 * 
+	 * @param name The name of the field
+	 * @param value The new value of the field
+	 * @throws InteractionContext when there is no such field, it is final,
+	 * or the value does not match its type
+	 */
+	public void set(String name, Object value) throws InteractionContext {
+		metadata.getAccessor(name).set(o, value);
+	}
+	
+	public int getInt(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getInt(o);
+	}
+	
+	public void setInt(String name, int value) throws InteractionContext {
+		metadata.getAccessor(name).setInt(o, value);
+	}
+	
+	public long getLong(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getLong(o);
+	}
+	
+	public void setLong(String name, long value) throws InteractionContext {
+		metadata.getAccessor(name).setLong(o, value);
+	}
+	
+	public double getDouble(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getDouble(o);
+	}
+	
+	public void setDouble(String name, double value) throws InteractionContext {
+		metadata.getAccessor(name).setDouble(o, value);
+	}
+	
+	public boolean getBoolean(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getBoolean(o);
+	}
+	
+	public void setBoolean(String name, boolean value) throws InteractionContext {
+		metadata.getAccessor(name).setBoolean(o, value);
+	}
+	
+	public float getFloat(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getFloat(o);
+	}
+	
+	public void setFloat(String name, float value) throws InteractionContext {
+		metadata.getAccessor(name).setFloat(o, value);
+	}
+	
+	public short getShort(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getShort(o);
+	}
+	
+	public void setShort(String name, short value) throws InteractionContext {
+		metadata.getAccessor(name).setShort(o, value);
+	}
+	
+	public byte getByte(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getByte(o);
+	}
+	
+	public void setByte(String name, byte value) throws InteractionContext {
+		metadata.getAccessor(name).setByte(o, value);
+	}
+	
+	public char getChar(String name) throws InteractionContext {
+		return metadata.getAccessor(name).getChar(o);
+	}
+	
+	public void setChar(String name, char value) throws InteractionContext {
+		metadata.getAccessor(name).setChar(o, value);
+	}
+	
+	/**
+	 * Reads every declared instance field of the object referenced by this
+	 * {@link FluidObject}, in declaration order.
+	 * 
+	 * @return A new array holding the value of each instance field
+	 * @throws InteractionContext when a field cannot be read
+	 * @see FluidObject#readFields(Object[])
+	 */
+	public Object[] readFields() throws InteractionContext {
+		return readFields(new Object[metadata.getInstanceAccessors().length]);
+	}
+	
+	/**
+	 * Reads every declared instance field of the object referenced by this
+	 * {@link FluidObject} into the provided array, in declaration order, so
+	 * that repeated snapshots can reuse the same array.
+	 * 
+	 * @param into An array at least as long as the number of instance fields
+	 * @return The provided array
+	 * @throws InteractionContext when the array is too short, or a field cannot be read
+	 */
+	public Object[] readFields(Object[] into) throws InteractionContext {
+		FieldAccessor[] accessors = metadata.getInstanceAccessors();
+		if(into.length < accessors.length) {
+			throw new InteractionContext().context("%s has %d instance fields, cannot read into an array of %d",
+					c.getName(), accessors.length, into.length);
+		}
+		
+		for(int i = 0; i < accessors.length; ++i) {
+			into[i] = accessors[i].get(o);
+		}
+		return into;
+	}
+	
+	/**
+	 * Reads every declared instance field of the object referenced by this
+	 * {@link FluidObject} into a map from field name to value, in declaration order.
+	 * 
+	 * @throws InteractionContext when a field cannot be read
+	 */
+	public Map<String, Object> readFieldMap() throws InteractionContext {
+		FieldAccessor[] accessors = metadata.getInstanceAccessors();
+		Map<String, Object> fields = new LinkedHashMap<String, Object>(accessors.length * 2);
+		for(FieldAccessor accessor : accessors) {
+			fields.put(accessor.getName(), accessor.get(o));
+		}
+		return fields;
 	}
 	
 	/**
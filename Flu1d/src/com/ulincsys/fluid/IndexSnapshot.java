@@ -0,0 +1,247 @@
+package com.ulincsys.fluid;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact on-disk snapshot of the package index and the alias table of an
+ * interactor, so that a later session can skip enumerating the packages of its
+ * class path and reloading its imports by hand.
+ *
+ * <p> The snapshot is memory mapped when restored. It is only used if the
+ * runtime image and every entry of the application class path have the same
+ * timestamps as when it was written. Aliases of classes loaded from a jar or
+ * class directory are only restored if that file is unchanged as well, and
+ * classes compiled in memory are not persisted. </p>
+ *
+ * <p> Directories are validated by their own timestamp, so changes deeper in a
+ * class directory of the application class path are not detected. </p>
+ *
+ * @author ulincsys
+ * @see PackageIndex
+ * @see Fluid
+ */
+public class IndexSnapshot {
+	private static final int magic = 0x464C5831;
+	private static final int version = 1;
+
+	private final File file;
+
+	public IndexSnapshot(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the snapshot of the provided interactor, kept in the user cache directory
+	 * ($XDG_CACHE_HOME/fluid, or ~/.cache/fluid) under a name derived from the absolute
+	 * path of its compilation directory, so that sessions started from different
+	 * directories keep separate snapshots.
+	 *
+	 * @return The snapshot of the provided interactor
+	 */
+	public static IndexSnapshot of(ClassInteractor C) {
+		String cache = System.getenv("XDG_CACHE_HOME");
+		File directory = cache == null || cache.isEmpty()
+				? new File(System.getProperty("user.home"), ".cache" + File.separator + "fluid") : new File(cache, "fluid");
+		String session = C.getCompilationDir().getAbsolutePath();
+		return new IndexSnapshot(new File(directory, String.format("index-%08x", session.hashCode())));
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes the class path packages, their contents and the alias table of the
+	 * provided interactor. The previous snapshot is replaced atomically, and the
+	 * directory of the snapshot is created if it does not exist.
+	 *
+	 * @return True once the snapshot was written
+	 */
+	public Boolean save(ClassInteractor C) throws IOException {
+		Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+
+		List<String> packages = new ArrayList<String>(C.classPath);
+		Map<String, Set<String>> contents = PackageIndex.getPackages(packages);
+
+		File temp = new File(file.getPath() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(magic);
+			out.writeInt(version);
+
+			writeString(out, System.getProperty("java.version", ""));
+			writeStamp(out, runtimeImage());
+
+			String[] classPath = System.getProperty("java.class.path", "").split(File.pathSeparator);
+			out.writeInt(classPath.length);
+			for(String entry : classPath) {
+				writeStamp(out, new File(entry));
+			}
+
+			out.writeInt(packages.size());
+			for(String pkg : packages) {
+				Set<String> names = contents.get(pkg);
+				writeString(out, pkg);
+				out.writeInt(names.size());
+				for(String name : names) {
+					writeString(out, name);
+				}
+			}
+
+			List<Map.Entry<String, Class<?>>> aliases = new ArrayList<Map.Entry<String, Class<?>>>();
+			C.classes.entrySet().forEach(alias -> {
+				if(source(alias.getValue()) != null) {
+					aliases.add(alias);
+				}
+			});
+
+			out.writeInt(aliases.size());
+			for(Map.Entry<String, Class<?>> alias : aliases) {
+				writeString(out, alias.getKey());
+				writeString(out, alias.getValue().getName());
+				writeStamp(out, source(alias.getValue()));
+			}
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+
+	/**
+	 * Restores the snapshot into the provided interactor, if it exists and is valid.
+	 * Packages are added to the class path of the interactor, their contents seed
+	 * the package index, and aliases are loaded and injected.
+	 *
+	 * @return A successful context holding one message per alias which could not
+	 * be restored, or a failed context explaining why the snapshot was not used
+	 */
+	public InteractionContext restore(ClassInteractor C) {
+		if(!file.isFile()) {
+			return InteractionContext.stackless("No index snapshot found", false);
+		}
+
+		MappedByteBuffer in;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch(IOException e) {
+			return InteractionContext.stackless("Could not read index snapshot", false).context(e);
+		}
+
+		try {
+			if(in.getInt() != magic || in.getInt() != version
+					|| !readString(in).equals(System.getProperty("java.version", ""))
+					|| !readStamp(in, runtimeImage())) {
+				return InteractionContext.stackless("Index snapshot was written by another runtime", false);
+			}
+
+			String[] classPath = System.getProperty("java.class.path", "").split(File.pathSeparator);
+			if(in.getInt() != classPath.length) {
+				return InteractionContext.stackless("Class path changed since the index snapshot was written", false);
+			}
+			for(String entry : classPath) {
+				if(!readStamp(in, new File(entry))) {
+					return InteractionContext.stackless("Class path changed since the index snapshot was written", false);
+				}
+			}
+
+			Map<String, Set<String>> contents = new HashMap<String, Set<String>>();
+			List<String> packages = new ArrayList<String>();
+			for(int p = in.getInt(); p > 0; --p) {
+				String pkg = readString(in);
+				Set<String> names = new HashSet<String>();
+				for(int n = in.getInt(); n > 0; --n) {
+					names.add(readString(in));
+				}
+				packages.add(pkg);
+				contents.put(pkg, names);
+			}
+
+			PackageIndex.restore(contents);
+			for(String pkg : packages) {
+				if(!C.classPath.contains(pkg)) {
+					C.classPath.add(pkg);
+				}
+			}
+
+			InteractionContext R = InteractionContext.stackless(null, true);
+			FluidClassLoader loader = C.getClassLoader();
+			for(int a = in.getInt(); a > 0; --a) {
+				String alias = readString(in);
+				String name = readString(in);
+				String path = readString(in);
+				Boolean unchanged = in.getLong() == new File(path).lastModified() & in.getLong() == new File(path).length();
+
+				try {
+					if(!unchanged) {
+						R.context("Alias %s not restored, %s changed", alias, path);
+					} else if(path.isEmpty()) {
+						C.injectClass(loader.loadClass(name), alias);
+					} else {
+						C.injectClass(loader.loadClass(new File(path), name), alias);
+					}
+				} catch(Exception e) {
+					R.context("Alias %s not restored, %s could not be loaded", alias, name);
+				}
+			}
+			return R;
+		} catch(RuntimeException e) {
+			return InteractionContext.stackless("Index snapshot is corrupt", false).context(e);
+		}
+	}
+
+	/**
+	 * @return The jar or class directory the provided class was loaded from, an empty
+	 * file if it was loaded by the platform or application loader, or null if it
+	 * cannot be loaded by name again
+	 */
+	private static File source(Class<?> c) {
+		ClassLoader loader = c.getClassLoader();
+		if(!(loader instanceof FluidClassLoader)) {
+			return new File("");
+		}
+
+		ClassSource source = ((FluidClassLoader) loader).getSource();
+		return source == null ? null : source.getFile();
+	}
+
+	private static File runtimeImage() {
+		return new File(System.getProperty("java.home", ""), "lib" + File.separator + "modules");
+	}
+
+	private static void writeStamp(DataOutputStream out, File f) throws IOException {
+		writeString(out, f.getPath());
+		out.writeLong(f.lastModified());
+		out.writeLong(f.length());
+	}
+
+	private static Boolean readStamp(MappedByteBuffer in, File f) {
+		return readString(in).equals(f.getPath()) & in.getLong() == f.lastModified() & in.getLong() == f.length();
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
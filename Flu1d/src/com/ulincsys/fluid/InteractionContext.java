@@ -1,5 +1,6 @@
 package com.ulincsys.fluid;
 
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -58,6 +59,15 @@ enum Context {
  * without the need to catch a throwable. This class extends
  * RuntimeException, and so can be optionally thrown from any context.
  * 
+ * <p> Contexts which are usually only returned can be created without
+ * capturing a stack trace using {@link #stackless(String, Boolean)}.
+ * Such a context should be thrown as {@code throw context.withStackTrace()},
+ * so that the stack is captured only when it is actually needed. </p>
+ * 
+ * <p> Message context is kept as format strings and their arguments, which
+ * are only formatted once the message is read through {@link #getMessage()}
+ * or {@link #toString()}. </p>
+ * 
  * @author ulincsys
  * @see Context
  */
@@ -66,10 +76,14 @@ public class InteractionContext extends RuntimeException {
 	
 	private Class<?> classContext;
 	private Exception exceptionContext;
-	private StringBuilder message;
+	private String[] formats;
+	private Object[][] arguments;
+	private int messages;
+	private String rendered;
 	private Boolean success;
 	private Object target;
 	private Object previous;
+	private boolean capturesStack;
 	
 	/**
 	 * Instantiates a context without context.
@@ -140,15 +154,99 @@ public class InteractionContext extends RuntimeException {
 	 * @see Context
 	 */
 	public InteractionContext(String message, Boolean success, Class<?> c, Exception e) {
+		this(message, success, c, e, true);
+	}
+	
+	private InteractionContext(String message, Boolean success, Class<?> c, Exception e, boolean capturesStack) {
+		if(capturesStack) {
+			this.capturesStack = true;
+			fillInStackTrace();
+		}
 		classContext = c;
 		exceptionContext = e;
 		if(message != null) {
-			this.message = new StringBuilder();
-			this.message.append(message);
+			append(message, null);
 		}
 		this.success = success;
 	}
 	
+	/**
+	 * Instantiates a context without context, and without capturing a stack trace.
+	 * 
+	 * @see #withStackTrace()
+	 */
+	public static InteractionContext stackless() {
+		return stackless(null, null);
+	}
+	
+	/**
+	 * Instantiates a context with both a message and success or failure state,
+	 * without capturing a stack trace.
+	 * 
+	 * @param message A string describing the context of this instance
+	 * @param success A boolean defining the success state of this context
+	 * @see #withStackTrace()
+	 */
+	public static InteractionContext stackless(String message, Boolean success) {
+		return new InteractionContext(message, success, null, null, false);
+	}
+	
+	/**
+	 * Captures the current stack trace if this context was created without one.
+	 * The frame of this method itself is omitted from the captured trace.
+	 * 
+	 * @return The instance referenced
+	 * @see #stackless(String, Boolean)
+	 */
+	public InteractionContext withStackTrace() {
+		if(!capturesStack) {
+			capturesStack = true;
+			fillInStackTrace();
+			
+			StackTraceElement[] trace = getStackTrace();
+			if(trace.length > 0) {
+				setStackTrace(Arrays.copyOfRange(trace, 1, trace.length));
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Fills in the stack trace only once this context captures its stack,
+	 * which is not the case for stackless contexts until {@link #withStackTrace()}.
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		if(!capturesStack) {
+			return this;
+		}
+		return super.fillInStackTrace();
+	}
+	
+	/**
+	 * Clears every context of this instance so that it can be reused as a
+	 * result holder. Message storage is kept, so a reused instance does not
+	 * allocate when the same amount of message context is added again.
+	 * 
+	 * @return The instance referenced
+	 */
+	public InteractionContext reset() {
+		classContext = null;
+		exceptionContext = null;
+		success = null;
+		target = null;
+		previous = null;
+		rendered = null;
+		for(int i = 0; i < messages; ++i) {
+			formats[i] = null;
+			arguments[i] = null;
+		}
+		messages = 0;
+		
+		return this;
+	}
+	
 	/**
 	 * @return Class relevant to this context, or null
 	 */
@@ -163,9 +261,27 @@ public class InteractionContext extends RuntimeException {
 		return exceptionContext;
 	}
 	
+	/**
+	 * Formats and joins every message added to this context. The result is
+	 * kept until more message context is added.
+	 * 
+	 * @return The detail message of this context, or null
+	 */
 	@Override
 	public String getMessage() {
-		return message.toString();
+		if(rendered == null && messages == 1 && arguments[0] == null) {
+			rendered = formats[0];
+		} else if(rendered == null && messages > 0) {
+			StringBuilder builder = new StringBuilder();
+			for(int i = 0; i < messages; ++i) {
+				if(i > 0) {
+					builder.append('\n');
+				}
+				builder.append(arguments[i] == null ? formats[i] : String.format(formats[i], arguments[i]));
+			}
+			rendered = builder.toString();
+		}
+		return rendered;
 	}
 	
 	@Override
@@ -228,7 +344,7 @@ public class InteractionContext extends RuntimeException {
 	 * @return True if this context contains a detail message, else false
 	 */
 	public Boolean hasMessage() {
-		return message != null;
+		return messages > 0;
 	}
 	
 	/**
@@ -252,12 +368,7 @@ public class InteractionContext extends RuntimeException {
 	 * @return The instance referenced
 	 */
 	public InteractionContext context(String message) {
-		if(this.message == null) {
-			this.message = new StringBuilder();
-		} else {
-			this.message.append('\n');
-		}
-		this.message.append(message);
+		append(message, null);
 		
 		return this;
 	}
@@ -266,7 +377,8 @@ public class InteractionContext extends RuntimeException {
 	 * Adds formatted message context to this instance.
 	 * 
 	 * <p> The provided message string and arguments are processed with {@link String#format}
-	 * before being added to this instance.</p>
+	 * when the message of this instance is first read, not when it is added. Arguments
+	 * should therefore not be modified after being passed to this method.</p>
 	 * 
 	 * @param message The format string content 
 	 * @param args The arguments for the format string
@@ -274,7 +386,24 @@ public class InteractionContext extends RuntimeException {
 	 * @see String#format(String, Object...)
 	 */
 	public InteractionContext context(String message, Object... args) {
-		return context(String.format(message, args));
+		append(message, args);
+		
+		return this;
+	}
+	
+	private void append(String format, Object[] args) {
+		if(formats == null) {
+			formats = new String[2];
+			arguments = new Object[2][];
+		} else if(messages == formats.length) {
+			formats = Arrays.copyOf(formats, messages * 2);
+			arguments = Arrays.copyOf(arguments, messages * 2);
+		}
+		
+		formats[messages] = format;
+		arguments[messages] = args;
+		++messages;
+		rendered = null;
 	}
 	
 	/**
@@ -337,7 +466,7 @@ public class InteractionContext extends RuntimeException {
 		StringBuilder builder = new StringBuilder();
 		
 		builder.append("Message:\n")
-		.append(or(message, "None."))
+		.append(or(getMessage(), "None."))
 		.append("\nClass Context:\n")
 		.append(or(classContext, "None."))
 		.append("\nException Context:\n")
@@ -369,6 +498,28 @@ public class InteractionContext extends RuntimeException {
 		}
 	}
 	
+	/**
+	 * Single context form of {@link #onAnyContext(Consumer, Context...)}, which
+	 * avoids allocating the variadic array.
+	 */
+	public InteractionContext onAnyContext(Consumer<InteractionContext> consumer, Context context) {
+		if(hasContext(context)) {
+			consumer.accept(this);
+		}
+		return this;
+	}
+	
+	/**
+	 * Two context form of {@link #onAnyContext(Consumer, Context...)}, which
+	 * avoids allocating the variadic array.
+	 */
+	public InteractionContext onAnyContext(Consumer<InteractionContext> consumer, Context first, Context second) {
+		if(hasContext(first) || hasContext(second)) {
+			consumer.accept(this);
+		}
+		return this;
+	}
+	
 	/**
 	 * This function accepts a consumer which takes an InteractionContext,
 	 * followed by a variadic array of Context elements that determines
@@ -426,87 +577,101 @@ public class InteractionContext extends RuntimeException {
 	}
 	
 	public InteractionContext onMessage(BiConsumer<InteractionContext, String> consumer) {
-		return onAnyContext(consume -> {
+		if(hasMessage()) {
 			consumer.accept(this, getMessage());
-		}, Context.MESSAGE);
+		}
+		return this;
 	}
 	
 	public InteractionContext onMessage(Consumer<String> consumer) {
-		return onAnyContext(consume -> {
+		if(hasMessage()) {
 			consumer.accept(getMessage());
-		}, Context.MESSAGE);
+		}
+		return this;
 	}
 	
 	public InteractionContext onClass(BiConsumer<InteractionContext, Class<?>> consumer) {
-		return onAnyContext(consume -> {
+		if(hasClassContext()) {
 			consumer.accept(this, getClassContext());
-		}, Context.CLASS);
+		}
+		return this;
 	}
 	
 	public InteractionContext onClass(Consumer<Class<?>> consumer) {
-		return onAnyContext(consume -> {
+		if(hasClassContext()) {
 			consumer.accept(getClassContext());
-		}, Context.CLASS);
+		}
+		return this;
 	}
 	
 	public InteractionContext onSuccess(Consumer<InteractionContext> consumer) {
-		return onAnyContext(consume -> {
+		if(hasContext(Context.SUCCESS)) {
 			consumer.accept(this);
-		}, Context.SUCCESS);
+		}
+		return this;
 	}
 	
 	public InteractionContext onSuccess(Runnable runnable) {
-		return onAnyContext(consume -> {
+		if(hasContext(Context.SUCCESS)) {
 			runnable.run();
-		}, Context.SUCCESS);
+		}
+		return this;
 	}
 	
 	public InteractionContext onFailure(Consumer<InteractionContext> consumer) {
-		return onAnyContext(consume -> {
+		if(hasContext(Context.FAILURE)) {
 			consumer.accept(this);
-		}, Context.FAILURE);
+		}
+		return this;
 	}
 	
 	public InteractionContext onFailure(Runnable runnable) {
-		return onAnyContext(consume -> {
+		if(hasContext(Context.FAILURE)) {
 			runnable.run();
-		}, Context.FAILURE);
+		}
+		return this;
 	}
 	
 	public InteractionContext onException(BiConsumer<InteractionContext, Exception> consumer) throws InteractionContext {
-		return onAnyContext(consume -> {
+		if(hasExceptionContext()) {
 			consumer.accept(this, getExceptionContext());
-		}, Context.EXCEPTION);
+		}
+		return this;
 	}
 	
 	public InteractionContext onException(Consumer<Exception> consumer) throws InteractionContext {
-		return onAnyContext(consume -> {
+		if(hasExceptionContext()) {
 			consumer.accept(getExceptionContext());
-		}, Context.EXCEPTION);
+		}
+		return this;
 	}
 	
 	public InteractionContext onTarget(BiConsumer<InteractionContext, Object> consumer) {
-		return onAnyContext(consume -> {
+		if(hasTarget()) {
 			consumer.accept(this, getTarget());
-		}, Context.TARGET);
+		}
+		return this;
 	}
 	
 	public InteractionContext onTarget(Consumer<Object> consumer) {
-		return onAnyContext(consume -> {
+		if(hasTarget()) {
 			consumer.accept(getTarget());
-		}, Context.TARGET);
+		}
+		return this;
 	}
 	
 	public InteractionContext onPrevious(BiConsumer<InteractionContext, Object> consumer) {
-		return onAnyContext(consume -> {
+		if(hasPrevious()) {
 			consumer.accept(this, getPrevious());
-		}, Context.PREVIOUS);
+		}
+		return this;
 	}
 	
 	public InteractionContext onPrevious(Consumer<Object> consumer) {
-		return onAnyContext(consume -> {
+		if(hasPrevious()) {
 			consumer.accept(getPrevious());
-		}, Context.PREVIOUS);
+		}
+		return this;
 	}
 	
 	public <T> T andFinally(Function<InteractionContext, T> function) {
@@ -0,0 +1,170 @@
+package com.ulincsys.fluid;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches resolved {@link InvocationSite}s per class, method name and
+ * parameter signature, so that repeated calls skip the declared method
+ * lookup and reuse the linked invoker.
+ *
+ * <p> This cache also acts as the promotion policy of its sites. A site
+ * is linked to a {@link java.lang.invoke.MethodHandle} once it was called
+ * {@link #getHandleThreshold()} times, and bound to a generated invoker
+ * once it was called {@link #getLinkThreshold()} times, provided linking
+ * is enabled. </p>
+ *
+ * @author ulincsys
+ * @see InvocationSite
+ * @see ClassInteractor
+ */
+public class InvocationCache {
+	private static final Class<?>[] noParams = new Class<?>[0];
+
+	private final Map<Key, InvocationSite> sites = new ConcurrentHashMap<Key, InvocationSite>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final ThreadLocal<Key> probes = ThreadLocal.withInitial(Key::new);
+	private volatile Boolean linking = true;
+	private volatile int handleThreshold = 16;
+	private volatile int linkThreshold = 1024;
+
+	/**
+	 * Returns the call site for the declared method of the provided class
+	 * with the given name and parameter types, resolving it if it has not
+	 * been requested before.
+	 *
+	 * @param params The parameter types, where null is the same as no parameters
+	 * @throws NoSuchMethodException when no such method is declared
+	 * @see Class#getDeclaredMethod(String, Class...)
+	 */
+	public InvocationSite lookup(Class<?> c, String name, Class<?>[] params) throws NoSuchMethodException {
+		if(params == null) {
+			params = noParams;
+		}
+		
+		Key probe = probes.get();
+		InvocationSite site = sites.get(probe.set(c, name, params));
+		probe.set(null, null, null);
+		if(site != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+			site = new InvocationSite(c.getDeclaredMethod(name, params), this);
+			
+			InvocationSite prev = sites.putIfAbsent(new Key().set(c, name, params.clone()), site);
+			if(prev != null) {
+				site = prev;
+			}
+		}
+		return site;
+	}
+
+	/**
+	 * Drops every call site resolved against the provided class.
+	 *
+	 * @return The number of call sites removed
+	 */
+	public int invalidate(Class<?> c) {
+		int size = sites.size();
+		sites.keySet().removeIf(key -> key.c == c);
+		return size - sites.size();
+	}
+
+	/**
+	 * Drops every cached call site. Hit and miss counts are kept.
+	 */
+	public void clear() {
+		sites.clear();
+	}
+
+	/**
+	 * @return A read-only view of every cached call site
+	 */
+	public Collection<InvocationSite> getSites() {
+		return Collections.unmodifiableCollection(sites.values());
+	}
+
+	/**
+	 * Enables or disables promotion of call sites to generated invokers.
+	 * Sites which are already bound stay bound.
+	 *
+	 * @see InvocationSite.Tier#LINKED
+	 */
+	public void setLinking(Boolean linking) {
+		this.linking = linking;
+	}
+
+	public Boolean isLinking() {
+		return linking;
+	}
+
+	/**
+	 * Sets the call counts after which sites are promoted.
+	 *
+	 * @param handleThreshold Calls before a site is linked to a handle
+	 * @param linkThreshold Calls before a site is bound to a generated invoker
+	 * @see InvocationSite.Tier
+	 */
+	public void setThresholds(int handleThreshold, int linkThreshold) {
+		this.handleThreshold = handleThreshold;
+		this.linkThreshold = linkThreshold;
+	}
+
+	public int getHandleThreshold() {
+		return handleThreshold;
+	}
+
+	public int getLinkThreshold() {
+		return linkThreshold;
+	}
+
+	public int size() {
+		return sites.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Cache key. Lookups reuse a per thread probe key so that cache hits do
+	 * not allocate, stored keys are never modified after insertion.
+	 */
+	private static final class Key {
+		Class<?> c;
+		String name;
+		Class<?>[] params;
+		int hash;
+
+		Key set(Class<?> c, String name, Class<?>[] params) {
+			this.c = c;
+			this.name = name;
+			this.params = params;
+			hash = c == null ? 0 : (c.hashCode() * 31 + name.hashCode()) * 31 + Arrays.hashCode(params);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return c == k.c && name.equals(k.name) && Arrays.equals(params, k.params);
+		}
+	}
+}
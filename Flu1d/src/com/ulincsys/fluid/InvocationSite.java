@@ -0,0 +1,262 @@
+package com.ulincsys.fluid;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A resolved method or constructor call site, which dispatches through one of three tiers:
+ * plain reflection, a linked {@link MethodHandle}, or a generated direct
+ * invoker (see {@link LinkedInvokers}).
+ *
+ * <p> Sites managed by an {@link InvocationCache} start on reflection and are
+ * promoted to the next tier once their call count passes the thresholds of
+ * that cache, so one-shot calls never pay the linking cost. Sites may also
+ * be promoted manually with {@link #link()} and {@link #bind()}. </p>
+ *
+ * <p> Methods which cannot be linked, as well as invocations whose
+ * arguments do not exactly match the declared parameter types, fall
+ * back to plain reflection so that errors are reported the same way
+ * {@link Method#invoke} would report them. </p>
+ *
+ * <p> Constructor sites are invoked like static methods returning the
+ * new instance, so a linked constructor site is a fast factory for its
+ * class, see {@link ClassMetadata#getFactory(Class...)}. </p>
+ *
+ * @author ulincsys
+ * @see InvocationCache
+ * @see ClassInteractor
+ */
+public class InvocationSite {
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	private static final MethodType invokerType = MethodType.methodType(Object.class, Object.class, Object[].class);
+	private static final Object[] noArgs = new Object[0];
+
+	/**
+	 * The dispatch strategy currently used by a call site.
+	 */
+	public enum Tier {
+		/**
+		 * Invokes through {@link Method#invoke}.
+		 */
+		REFLECTIVE,
+		/**
+		 * Invokes through a linked {@link MethodHandle}.
+		 */
+		HANDLE,
+		/**
+		 * Invokes through a generated direct invoker.
+		 */
+		LINKED;
+	}
+
+	private final Executable executable;
+	private final Class<?>[] parameterTypes;
+	private final Class<?>[] argumentTypes;
+	private final Boolean isStatic;
+	private final InvocationCache policy;
+
+	private volatile Tier tier = Tier.REFLECTIVE;
+	private volatile MethodHandle handle;
+	private volatile LinkedInvokers.Invoker invoker;
+	private Boolean linkAttempted = false;
+	private Boolean bindAttempted = false;
+	private int calls;
+
+	/**
+	 * False once this site cannot be promoted any further, after which invocations are
+	 * no longer counted, so that concurrent callers do not contend on the call count.
+	 */
+	private volatile Boolean promotable;
+
+	/**
+	 * @param executable The method or constructor invoked by this site
+	 * @param policy The cache providing the promotion thresholds, or null
+	 * if this site should never be promoted automatically
+	 */
+	InvocationSite(Executable executable, InvocationCache policy) {
+		this.executable = executable;
+		this.policy = policy;
+		parameterTypes = executable.getParameterTypes();
+		argumentTypes = MethodType.methodType(void.class, parameterTypes).wrap().parameterArray();
+		isStatic = executable instanceof Constructor || Modifier.isStatic(executable.getModifiers());
+		promotable = policy != null;
+	}
+
+	/**
+	 * @return The method this site invokes, or null if it invokes a constructor
+	 */
+	public Method getMethod() {
+		return executable instanceof Method ? (Method) executable : null;
+	}
+
+	/**
+	 * @return The method or constructor this site invokes
+	 */
+	public Executable getExecutable() {
+		return executable;
+	}
+
+	/**
+	 * @return The tier this site currently dispatches through
+	 */
+	public Tier getTier() {
+		return tier;
+	}
+
+	/**
+	 * @return The number of invocations counted towards promotion of this site
+	 */
+	public int getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Promotes this site to at least {@link Tier#HANDLE}, if the method can be linked.
+	 * Linking is only attempted once per site.
+	 *
+	 * @return True if this site is linked, else false
+	 */
+	public synchronized Boolean link() {
+		if(!linkAttempted) {
+			linkAttempted = true;
+			handle = link(executable);
+			if(handle != null && tier == Tier.REFLECTIVE) {
+				tier = Tier.HANDLE;
+			}
+			if(handle == null || !LinkedInvokers.canGenerate(executable)) {
+				promotable = false;
+			}
+		}
+		return handle != null;
+	}
+
+	/**
+	 * Promotes this site to {@link Tier#LINKED}, if the method can be bound to
+	 * a generated invoker. Generation is only attempted once per site.
+	 *
+	 * @return True if this site is bound, else false
+	 * @see LinkedInvokers#generate(Executable)
+	 */
+	public synchronized Boolean bind() {
+		if(!bindAttempted && link()) {
+			bindAttempted = true;
+			promotable = false;
+			invoker = LinkedInvokers.generate(executable);
+			if(invoker != null) {
+				tier = Tier.LINKED;
+			}
+		}
+		return invoker != null;
+	}
+
+	/**
+	 * Links the provided method or constructor into a handle of type (Object, Object[])Object,
+	 * where the first argument is the receiver (ignored for static methods and constructors).
+	 *
+	 * @return The linked handle, or null if the method is not accessible
+	 */
+	private static MethodHandle link(Executable e) {
+		MethodHandle h;
+		try {
+			if(e instanceof Constructor) {
+				h = lookup.unreflectConstructor((Constructor<?>) e).asFixedArity();
+			} else {
+				h = lookup.unreflect((Method) e).asFixedArity();
+			}
+		} catch(IllegalAccessException ex) {
+			return null;
+		}
+
+		int count = e.getParameterCount();
+		h = h.asType(h.type().generic()).asSpreader(Object[].class, count);
+		if(e instanceof Constructor || Modifier.isStatic(e.getModifiers())) {
+			h = MethodHandles.dropArguments(h, 0, Object.class);
+		}
+
+		return h.asType(invokerType);
+	}
+
+	/**
+	 * Counts an invocation and promotes this site once it passes the
+	 * thresholds of its policy.
+	 */
+	private void count() {
+		int n = ++calls;
+		if(tier == Tier.REFLECTIVE) {
+			if(!linkAttempted && n >= policy.getHandleThreshold()) {
+				link();
+			}
+		} else if(!bindAttempted && policy.isLinking() && n >= policy.getLinkThreshold()) {
+			bind();
+		}
+	}
+
+	/**
+	 * Invokes the method of this site with the same contract as {@link Method#invoke},
+	 * or its constructor with the same contract as {@link Constructor#newInstance}.
+	 * Exceptions thrown by the method itself are wrapped in an {@link InvocationTargetException}.
+	 */
+	Object invoke(Object o, Object[] args) throws Exception {
+		if(args == null) {
+			args = noArgs;
+		}
+
+		if(promotable) {
+			count();
+		}
+
+		MethodHandle linked = handle;
+		if(linked == null || !acceptsExactly(o, args)) {
+			if(executable instanceof Constructor) {
+				return ((Constructor<?>) executable).newInstance(args);
+			}
+			return ((Method) executable).invoke(o, args);
+		}
+
+		LinkedInvokers.Invoker bound = invoker;
+		try {
+			if(bound != null) {
+				return bound.invoke(o, args);
+			}
+			return (Object) linked.invokeExact(o, args);
+		} catch(Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/**
+	 * Returns true if the receiver and arguments can be passed to the linked
+	 * handle or invoker without any conversion which could fail inside of it.
+	 */
+	private Boolean acceptsExactly(Object o, Object[] args) {
+		if(!isStatic && !executable.getDeclaringClass().isInstance(o)) {
+			return false;
+		}
+
+		if(args.length != parameterTypes.length) {
+			return false;
+		}
+
+		for(int i = 0; i < args.length; ++i) {
+			if(args[i] == null) {
+				if(parameterTypes[i].isPrimitive()) {
+					return false;
+				}
+			} else if(parameterTypes[i].isPrimitive()) {
+				if(argumentTypes[i] != args[i].getClass()) {
+					return false;
+				}
+			} else if(!argumentTypes[i].isInstance(args[i])) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,153 @@
+package com.ulincsys.fluid;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Generates direct invokers for methods and constructors using the {@link LambdaMetafactory}.
+ * Each generated invoker is a class implementing one of the fixed arity
+ * interfaces below, calling the target method directly from bytecode, so
+ * that the call to the target itself is not dispatched through reflection.
+ *
+ * <p> The generated class is wrapped by one of the adapt lambdas below, and
+ * every method of the same arity and shape (static or instance) shares that
+ * lambda class. Once several methods of one shape are linked, the interface
+ * call from the shared lambda to the generated class becomes megamorphic, so
+ * the JIT does not inline the target through an {@link Invoker}. Only the
+ * call from the generated class to its target is direct. </p>
+ *
+ * <p> Methods which cannot be bound this way (void methods, methods with
+ * more than five arguments including the receiver, or methods of classes not
+ * visible from this class loader) are left to {@link MethodHandle} dispatch. </p>
+ *
+ * @author ulincsys
+ * @see InvocationSite
+ */
+public class LinkedInvokers {
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	private static final Class<?>[] shapes = {
+			Arity0.class, Arity1.class, Arity2.class, Arity3.class, Arity4.class, Arity5.class
+	};
+
+	private LinkedInvokers() {
+
+	}
+
+	/**
+	 * Uniform entry point to a generated invoker, where the first argument
+	 * is the receiver (ignored for static methods).
+	 */
+	public interface Invoker {
+		Object invoke(Object o, Object[] args) throws Throwable;
+	}
+
+	public interface Arity0 { Object invoke(); }
+	public interface Arity1 { Object invoke(Object a); }
+	public interface Arity2 { Object invoke(Object a, Object b); }
+	public interface Arity3 { Object invoke(Object a, Object b, Object c); }
+	public interface Arity4 { Object invoke(Object a, Object b, Object c, Object d); }
+	public interface Arity5 { Object invoke(Object a, Object b, Object c, Object d, Object e); }
+
+	/**
+	 * Generates a direct invoker for the provided method or constructor, where
+	 * constructors are invoked like static methods returning the new instance.
+	 *
+	 * @return The generated invoker, or null if the method cannot be bound
+	 */
+	public static Invoker generate(Executable e) {
+		if(!canGenerate(e)) {
+			return null;
+		}
+
+		Boolean isConstructor = e instanceof Constructor;
+		Boolean isStatic = isConstructor || Modifier.isStatic(e.getModifiers());
+		int arity = e.getParameterCount() + (isStatic ? 0 : 1);
+
+		try {
+			MethodHandle impl = isConstructor
+					? lookup.unreflectConstructor((Constructor<?>) e) : lookup.unreflect((Method) e);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "invoke",
+					MethodType.methodType(shapes[arity]), MethodType.genericMethodType(arity),
+					impl, impl.type().wrap());
+
+			return adapt(site.getTarget().invoke(), arity, isStatic);
+		} catch(Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return False if the provided method or constructor can never be bound to a generated
+	 * invoker, because it is a void method, takes too many arguments, or its class is not visible
+	 */
+	public static Boolean canGenerate(Executable e) {
+		Boolean isConstructor = e instanceof Constructor;
+		int arity = e.getParameterCount() + (isConstructor || Modifier.isStatic(e.getModifiers()) ? 0 : 1);
+
+		return (isConstructor || ((Method) e).getReturnType() != void.class)
+				&& arity < shapes.length && isVisible(e.getDeclaringClass());
+	}
+
+	private static Invoker adapt(Object f, int arity, Boolean isStatic) {
+		switch(arity) {
+		case 0:
+			Arity0 f0 = (Arity0) f;
+			return (o, a) -> f0.invoke();
+		case 1:
+			Arity1 f1 = (Arity1) f;
+			if(isStatic) {
+				return (o, a) -> f1.invoke(a[0]);
+			}
+			return (o, a) -> f1.invoke(o);
+		case 2:
+			Arity2 f2 = (Arity2) f;
+			if(isStatic) {
+				return (o, a) -> f2.invoke(a[0], a[1]);
+			}
+			return (o, a) -> f2.invoke(o, a[0]);
+		case 3:
+			Arity3 f3 = (Arity3) f;
+			if(isStatic) {
+				return (o, a) -> f3.invoke(a[0], a[1], a[2]);
+			}
+			return (o, a) -> f3.invoke(o, a[0], a[1]);
+		case 4:
+			Arity4 f4 = (Arity4) f;
+			if(isStatic) {
+				return (o, a) -> f4.invoke(a[0], a[1], a[2], a[3]);
+			}
+			return (o, a) -> f4.invoke(o, a[0], a[1], a[2]);
+		default:
+			Arity5 f5 = (Arity5) f;
+			if(isStatic) {
+				return (o, a) -> f5.invoke(a[0], a[1], a[2], a[3], a[4]);
+			}
+			return (o, a) -> f5.invoke(o, a[0], a[1], a[2], a[3]);
+		}
+	}
+
+	/**
+	 * Generated invokers reference their target class by name, so
+	 * it must be resolvable from the loader of this class.
+	 */
+	private static Boolean isVisible(Class<?> c) {
+		ClassLoader target = c.getClassLoader();
+		if(target == null) {
+			return true;
+		}
+
+		for(ClassLoader l = LinkedInvokers.class.getClassLoader(); l != null; l = l.getParent()) {
+			if(l == target) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,136 @@
+package com.ulincsys.fluid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * A file manager which keeps compiled classes in memory instead of
+ * writing them to an output directory. Every other location is
+ * served by the wrapped standard file manager.
+ *
+ * @author ulincsys
+ * @see ClassInteractor#compileSource(String, String)
+ * @see FluidClassLoader#define(Map)
+ */
+public class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+	private final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+	private final Boolean owned;
+
+	public MemoryFileManager(StandardJavaFileManager fileManager) {
+		this(fileManager, true);
+	}
+
+	/**
+	 * @param fileManager The file manager serving every other location
+	 * @param owned False if the provided file manager is shared, and should
+	 * stay open when this file manager is closed
+	 */
+	public MemoryFileManager(StandardJavaFileManager fileManager, Boolean owned) {
+		super(fileManager);
+		this.owned = owned;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(owned) {
+			super.close();
+		} else {
+			flush();
+		}
+	}
+
+	/**
+	 * @return The wrapped standard file manager
+	 */
+	public StandardJavaFileManager getStandardFileManager() {
+		return fileManager;
+	}
+
+	/**
+	 * @return The bytes of every class compiled through this file manager,
+	 * by binary name
+	 */
+	public Map<String, byte[]> getClasses() {
+		return classes;
+	}
+
+	@Override
+	public JavaFileObject getJavaFileForOutput(Location location, String className,
+			JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+		if(location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS) {
+			return new Output(className);
+		}
+		return super.getJavaFileForOutput(location, className, kind, sibling);
+	}
+
+	/**
+	 * Creates a compilation unit from source text.
+	 *
+	 * @param className The binary name of the top level class declared by the source
+	 * @param source The source text
+	 */
+	public static JavaFileObject source(String className, String source) {
+		return new Source(uri(className, JavaFileObject.Kind.SOURCE), source);
+	}
+	
+	/**
+	 * Creates a compilation unit from source text read from the provided file,
+	 * so that diagnostics refer to that file.
+	 *
+	 * @param file The file the source was read from
+	 * @param source The source text
+	 */
+	public static JavaFileObject source(File file, String source) {
+		return new Source(file.toURI(), source);
+	}
+
+	private static URI uri(String className, JavaFileObject.Kind kind) {
+		return URI.create("memory:///" + className.replace('.', '/') + kind.extension);
+	}
+
+	private static class Source extends SimpleJavaFileObject {
+		private final String source;
+
+		Source(URI uri, String source) {
+			super(uri, Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	private class Output extends SimpleJavaFileObject {
+		private final String className;
+
+		Output(String className) {
+			super(uri(className, Kind.CLASS), Kind.CLASS);
+			this.className = className;
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					classes.put(className, toByteArray());
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.ulincsys.fluid;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A reusable invoker for the overloads of a method with a given name, which
+ * selects the overload by the runtime types of the arguments of each call.
+ *
+ * <p> Selected overloads are kept in an inline cache keyed on the runtime
+ * argument types. The first {@value #polymorphicLimit} argument type
+ * combinations are matched by comparing the class of each argument, so
+ * repeat calls neither build a type array nor search the overloads. Further
+ * combinations are kept in a map keyed by their type array. Invokers shared
+ * through {@link ClassMetadata#getInvoker(String)} do not cache argument
+ * types from loaders their class cannot see, so they never keep another
+ * class loader reachable. </p>
+ *
+ * <p> An overload is selected by exact parameter types first, where boxed
+ * arguments match primitive parameters, and then by the first declared
+ * overload every argument is assignable to. A null argument matches any
+ * reference parameter. </p>
+ *
+ * @author ulincsys
+ * @see FluidObject#call(String, Object...)
+ * @see FluidObject#bind(String, Class...)
+ */
+public class MethodInvoker {
+	private static final int polymorphicLimit = 4;
+	private static final Object[] noArgs = new Object[0];
+
+	private final ClassMetadata metadata;
+	private final String name;
+	private final Boolean shared;
+	private volatile Entry[] entries = new Entry[0];
+	private final Map<List<Class<?>>, InvocationSite> megamorphic = new ConcurrentHashMap<List<Class<?>>, InvocationSite>();
+
+	/**
+	 * @param shared True if this invoker is cached with the metadata of its class,
+	 * in which case argument types from loaders that class cannot see are not cached
+	 */
+	MethodInvoker(ClassMetadata metadata, String name, Boolean shared) {
+		this.metadata = metadata;
+		this.name = name;
+		this.shared = shared;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The number of argument type combinations cached by this invoker
+	 */
+	public int getCachedTypes() {
+		return entries.length + megamorphic.size();
+	}
+
+	/**
+	 * Invokes the overload selected for the runtime types of the provided arguments.
+	 *
+	 * @param o The receiver, ignored for static methods
+	 * @return The value returned by the method, or null for void methods
+	 * @throws InteractionContext when no overload accepts the arguments, or the method
+	 * throws, in which case the exception is provided as context
+	 */
+	public Object invoke(Object o, Object... args) throws InteractionContext {
+		if(args == null) {
+			args = noArgs;
+		}
+
+		InvocationSite site = null;
+		for(Entry e : entries) {
+			if(e.matches(args)) {
+				site = e.site;
+				break;
+			}
+		}
+
+		if(site == null) {
+			site = miss(args);
+		}
+
+		try {
+			return site.invoke(o, args);
+		} catch(InvocationTargetException e) {
+			throw new InteractionContext()
+			.context("An exception occurred during execution of method %s", name).context(e);
+		} catch(Exception e) {
+			throw new InteractionContext().context("Error calling method %s", name).context(e);
+		}
+	}
+
+	/**
+	 * Selects the overload for the provided parameter types ahead of the first call,
+	 * and caches it for arguments of exactly these types.
+	 *
+	 * @return The selected method
+	 * @throws InteractionContext when no overload accepts the provided types
+	 */
+	Method prime(Class<?>[] types) throws InteractionContext {
+		types = MethodType.methodType(void.class, types).wrap().parameterArray();
+		InvocationSite site = select(types);
+		cache(types, site);
+		return site.getMethod();
+	}
+
+	private InvocationSite miss(Object[] args) throws InteractionContext {
+		Class<?>[] types = new Class<?>[args.length];
+		for(int i = 0; i < args.length; ++i) {
+			types[i] = args[i] == null ? null : args[i].getClass();
+		}
+
+		InvocationSite site = megamorphic.get(Arrays.asList(types));
+		if(site == null) {
+			site = select(types);
+			cache(types, site);
+		}
+		return site;
+	}
+
+	private synchronized void cache(Class<?>[] types, InvocationSite site) {
+		if(shared && !metadata.isVisible(types)) {
+			return;
+		}
+		
+		Entry[] current = entries;
+		if(current.length < polymorphicLimit) {
+			Entry[] next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = new Entry(types, site);
+			entries = next;
+		} else {
+			megamorphic.putIfAbsent(Arrays.asList(types), site);
+		}
+	}
+
+	private InvocationSite select(Class<?>[] types) throws InteractionContext {
+		Method assignable = null;
+		for(Method m : metadata.getMethods(name)) {
+			if(m.getParameterCount() != types.length) {
+				continue;
+			}
+
+			Class<?>[] params = MethodType.methodType(void.class, m.getParameterTypes()).wrap().parameterArray();
+			Boolean exact = true;
+			Boolean callable = true;
+			for(int i = 0; i < types.length && callable; ++i) {
+				if(types[i] == null) {
+					callable = !m.getParameterTypes()[i].isPrimitive();
+					exact = false;
+				} else {
+					callable = params[i].isAssignableFrom(types[i]);
+					exact &= params[i] == types[i];
+				}
+			}
+
+			if(callable && exact && !m.isBridge()) {
+				return metadata.getSite(m);
+			} else if(callable && (assignable == null || assignable.isBridge() && !m.isBridge())) {
+				assignable = m;
+			}
+		}
+
+		if(assignable == null) {
+			throw new InteractionContext().context("No method %s on %s accepts arguments of types %s",
+					name, metadata.getType().getName(), Arrays.toString(types));
+		}
+		return metadata.getSite(assignable);
+	}
+
+	private static final class Entry {
+		final Class<?>[] types;
+		final InvocationSite site;
+
+		Entry(Class<?>[] types, InvocationSite site) {
+			this.types = types;
+			this.site = site;
+		}
+
+		Boolean matches(Object[] args) {
+			if(args.length != types.length) {
+				return false;
+			}
+
+			for(int i = 0; i < args.length; ++i) {
+				if(args[i] == null ? types[i] != null : args[i].getClass() != types[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
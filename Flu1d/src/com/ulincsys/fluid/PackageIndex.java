@@ -0,0 +1,254 @@
+package com.ulincsys.fluid;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Resolves simple class names against the packages of a class path
+ * (see {@link ClassInteractor#classPath}) with a map lookup.
+ *
+ * <p> The classes of each package are enumerated from the platform modules
+ * and from the jars and directories of the application class path. Both
+ * are listed once per process, and the index is rebuilt whenever the list
+ * of packages changes. Packages which could not be enumerated are reported
+ * by {@link #getUnindexedPackages()}, and {@link #getCandidates(String)} lists
+ * them in class path order along with the indexed packages holding a name, so
+ * that callers probe them without changing which package takes precedence. </p>
+ *
+ * <p> Names which could not be resolved are remembered until the next
+ * rebuild, or until {@link #clearMissing()} is called because new classes
+ * became loadable, so repeated misses are answered without probing again. </p>
+ *
+ * <p> Package contents restored from an {@link IndexSnapshot} take precedence
+ * over enumeration, so a restored class path is indexed without listing the
+ * runtime image or scanning the class path. </p>
+ *
+ * @author ulincsys
+ * @see FluidClassLoader#loadSimpleClass(String)
+ */
+public class PackageIndex {
+	private static final Map<String, Set<String>> platformPackages = new ConcurrentHashMap<String, Set<String>>();
+	private static volatile Map<String, Set<String>> classPathPackages;
+	private static final Map<String, Set<String>> snapshotPackages = new ConcurrentHashMap<String, Set<String>>();
+
+	private List<String> packages = List.of();
+	private List<Set<String>> contents = List.of();
+	private Map<String, String> names = Map.of();
+	private List<String> unindexed = List.of();
+	private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Rebuilds this index if the provided packages differ from the indexed ones.
+	 * Earlier packages take precedence over later ones for the same simple name.
+	 *
+	 * @return This index
+	 */
+	public synchronized PackageIndex update(List<String> classPath) {
+		if(packages.equals(classPath)) {
+			return this;
+		}
+
+		List<String> packages = List.copyOf(classPath);
+		List<Set<String>> contents = new ArrayList<Set<String>>(packages.size());
+		Map<String, String> names = new HashMap<String, String>();
+		List<String> unindexed = new ArrayList<String>();
+
+		for(String pkg : packages) {
+			Set<String> classes = classes(pkg);
+			if(classes.isEmpty()) {
+				unindexed.add(pkg);
+				contents.add(null);
+			} else {
+				contents.add(classes);
+			}
+			for(String simpleName : classes) {
+				names.putIfAbsent(simpleName, pkg + "." + simpleName);
+			}
+		}
+
+		this.contents = contents;
+		this.names = names;
+		this.unindexed = Collections.unmodifiableList(unindexed);
+		this.packages = packages;
+		missing.clear();
+		return this;
+	}
+
+	/**
+	 * @return The fully qualified name of the provided simple name, or null if
+	 * no indexed package holds such a class
+	 */
+	public String resolve(String simpleName) {
+		return names.get(simpleName);
+	}
+
+	/**
+	 * Returns the fully qualified names the provided simple name may resolve to,
+	 * in class path order: one for each indexed package holding such a class, and
+	 * one for each package which could not be indexed and must be probed.
+	 *
+	 * @return The candidate names, which are empty if no package can hold such a class
+	 */
+	public synchronized List<String> getCandidates(String simpleName) {
+		String only = names.get(simpleName);
+		if(only != null && unindexed.isEmpty()) {
+			return List.of(only);
+		}
+
+		List<String> candidates = new ArrayList<String>(1);
+		for(int i = 0; i < packages.size(); ++i) {
+			Set<String> classes = contents.get(i);
+			if(classes == null || classes.contains(simpleName)) {
+				candidates.add(packages.get(i) + "." + simpleName);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * @return True if the provided simple name was marked missing since the last rebuild
+	 */
+	public Boolean isMissing(String simpleName) {
+		return missing.contains(simpleName);
+	}
+
+	/**
+	 * Remembers that the provided simple name could not be resolved in any package.
+	 */
+	public void markMissing(String simpleName) {
+		missing.add(simpleName);
+	}
+
+	/**
+	 * Forgets every name marked missing, since classes were defined or a source was
+	 * registered which may hold them.
+	 */
+	public void clearMissing() {
+		missing.clear();
+	}
+
+	/**
+	 * @return The packages of the class path for which no classes could be enumerated
+	 */
+	public List<String> getUnindexedPackages() {
+		return unindexed;
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public int getMissingCount() {
+		return missing.size();
+	}
+
+	/**
+	 * Seeds the contents of the provided packages, as previously returned by
+	 * {@link #getPackages(List)}. Indexes built afterwards use these contents
+	 * instead of enumerating the packages.
+	 */
+	static void restore(Map<String, Set<String>> packages) {
+		snapshotPackages.putAll(packages);
+	}
+
+	/**
+	 * @return The simple names of the classes of each provided package
+	 */
+	static Map<String, Set<String>> getPackages(List<String> packages) {
+		Map<String, Set<String>> contents = new HashMap<String, Set<String>>();
+		for(String pkg : packages) {
+			contents.put(pkg, classes(pkg));
+		}
+		return contents;
+	}
+
+	/**
+	 * @return The simple names of the classes in the provided package, including
+	 * nested classes by their binary simple name (such as {@code Map$Entry})
+	 */
+	private static Set<String> classes(String pkg) {
+		Set<String> restored = snapshotPackages.get(pkg);
+		if(restored != null) {
+			return restored;
+		}
+
+		Set<String> classes = new HashSet<String>(platformPackages.computeIfAbsent(pkg, PackageIndex::platformClasses));
+		classes.addAll(classPathPackages().getOrDefault(pkg, Set.of()));
+		return classes;
+	}
+
+	private static Set<String> platformClasses(String pkg) {
+		Set<String> classes = new HashSet<String>();
+		try {
+			FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+			Path modules = jrt.getPath("/packages", pkg);
+			if(!Files.isDirectory(modules)) {
+				return classes;
+			}
+
+			try(Stream<Path> links = Files.list(modules)) {
+				for(Path module : (Iterable<Path>) links::iterator) {
+					Path dir = jrt.getPath("/modules", module.getFileName().toString(), pkg.replace('.', '/'));
+					try(Stream<Path> files = Files.list(dir)) {
+						files.forEach(file -> {
+							String name = file.getFileName().toString();
+							if(name.endsWith(".class")) {
+								add(classes, name.substring(0, name.length() - ".class".length()));
+							}
+						});
+					}
+				}
+			}
+		} catch(Exception e) {
+			// No runtime image, or the package is not readable, it is left to probing
+		}
+		return classes;
+	}
+
+	private static Map<String, Set<String>> classPathPackages() {
+		Map<String, Set<String>> packages = classPathPackages;
+		if(packages != null) {
+			return packages;
+		}
+
+		packages = new HashMap<String, Set<String>>();
+		for(String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+			File file = new File(entry);
+			if(entry.isEmpty() || !file.exists()) {
+				continue;
+			}
+
+			try(ClassSource source = ClassSource.open(file)) {
+				for(String className : source.getClassNames()) {
+					int split = className.lastIndexOf('.');
+					String pkg = split == -1 ? "" : className.substring(0, split);
+					add(packages.computeIfAbsent(pkg, p -> new HashSet<String>()), className.substring(split + 1));
+				}
+			} catch(IOException e) {
+				continue;
+			}
+		}
+
+		return classPathPackages = packages;
+	}
+
+	private static void add(Set<String> classes, String simpleName) {
+		if(!simpleName.equals("module-info") && !simpleName.equals("package-info")) {
+			classes.add(simpleName);
+		}
+	}
+}